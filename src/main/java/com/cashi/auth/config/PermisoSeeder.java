@@ -2,6 +2,7 @@ package com.cashi.auth.config;
 
 import com.cashi.auth.entity.Permiso;
 import com.cashi.auth.repository.PermisoRepository;
+import com.cashi.auth.service.DiccionarioPermisosService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
@@ -19,6 +20,7 @@ import org.springframework.stereotype.Component;
 public class PermisoSeeder implements CommandLineRunner {
 
     private final PermisoRepository permisoRepository;
+    private final DiccionarioPermisosService diccionarioPermisosService;
 
     @Override
     public void run(String... args) {
@@ -49,6 +51,9 @@ public class PermisoSeeder implements CommandLineRunner {
         }
         log.info("  Total de permisos en BD: {}", totalPermisos);
         log.info("====================================================================");
+
+        // Publicar el diccionario de bits con el catálogo ya completo
+        diccionarioPermisosService.recargar();
     }
 
     private void seedPermisosClientes() {
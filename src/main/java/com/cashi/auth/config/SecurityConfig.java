@@ -1,10 +1,15 @@
 package com.cashi.auth.config;
 
+import com.cashi.auth.security.BitsetPermissionEvaluator;
 import com.cashi.auth.security.JwtAuthenticationFilter;
 import com.cashi.auth.service.CustomUserDetailsService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -15,21 +20,32 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
 @RequiredArgsConstructor
+@Slf4j
 public class SecurityConfig {
 
+    private static final String BCRYPT = "bcrypt";
+    private static final int BCRYPT_COSTO_MAXIMO = 16;
+    private static final int MUESTRAS_CALIBRACION = 5;
+
     private final JwtAuthenticationFilter jwtAuthFilter;
     private final CustomUserDetailsService userDetailsService;
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, AuthenticationProvider authenticationProvider) throws Exception {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .cors(cors -> cors.configure(http))  // ✅ HABILITAR CORS (usa CorsConfig.java)
@@ -43,6 +59,8 @@ public class SecurityConfig {
                                 "/api/configuracion/sesion",
                                 "/api/configuracion/sesion/*",
                                 "/api/agents/*/status",
+                                "/.well-known/jwks.json",
+                                "/api/permisos/diccionario",
                                 "/api-docs/**",
                                 "/swagger-ui/**",
                                 "/swagger-ui.html",
@@ -57,17 +75,17 @@ public class SecurityConfig {
                 .sessionManagement(session -> session
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
-                .authenticationProvider(authenticationProvider())
+                .authenticationProvider(authenticationProvider)
                 .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
 
     @Bean
-    public AuthenticationProvider authenticationProvider() {
+    public AuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
         return authProvider;
     }
 
@@ -76,8 +94,61 @@ public class SecurityConfig {
         return config.getAuthenticationManager();
     }
 
+    // hasPermission(...) en @PreAuthorize se resuelve con una prueba de bit
+    @Bean
+    static MethodSecurityExpressionHandler methodSecurityExpressionHandler(BitsetPermissionEvaluator permissionEvaluator) {
+        DefaultMethodSecurityExpressionHandler handler = new DefaultMethodSecurityExpressionHandler();
+        handler.setPermissionEvaluator(permissionEvaluator);
+        return handler;
+    }
+
+    /**
+     * Encoder delegante: los hashes nuevos se guardan como {bcrypt} con el costo configurado;
+     * los hashes antiguos sin prefijo se siguen verificando con BCrypt y se re-hashean en el siguiente login.
+     * El costo es fijo (auth.password.bcrypt-strength) para que todos los nodos usen el mismo; con
+     * auth.password.calibrar=true se sube al arrancar hacia auth.password.target-ms, nunca por debajo del configurado.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${auth.password.bcrypt-strength:10}") int strength,
+            @Value("${auth.password.calibrar:false}") boolean calibrar,
+            @Value("${auth.password.target-ms:250}") long targetMs
+    ) {
+        int costo = calibrar ? calibrarCostoBcrypt(strength, targetMs) : strength;
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT, new BCryptPasswordEncoder(costo));
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(BCRYPT, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return encoder;
+    }
+
+    // Mayor costo, desde el configurado, cuyo hash no supera el tiempo objetivo (cada punto de costo duplica el tiempo)
+    private int calibrarCostoBcrypt(int costoMinimo, long targetMs) {
+        new BCryptPasswordEncoder(costoMinimo).encode("calentamiento");
+
+        int costo = costoMinimo;
+        long duracionMs = medirBcrypt(costo);
+        while (costo < BCRYPT_COSTO_MAXIMO && duracionMs * 2 <= targetMs) {
+            costo++;
+            duracionMs = medirBcrypt(costo);
+        }
+        log.info("Costo bcrypt calibrado: {} (~{} ms por verificación, objetivo {} ms, mínimo {})",
+                costo, duracionMs, targetMs, costoMinimo);
+        return costo;
+    }
+
+    // Mediana de varias muestras: una sola medición al arrancar la distorsiona cualquier pausa
+    private long medirBcrypt(int costo) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(costo);
+        long[] muestras = new long[MUESTRAS_CALIBRACION];
+        for (int i = 0; i < muestras.length; i++) {
+            long inicio = System.nanoTime();
+            encoder.encode("calibracion");
+            muestras[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        }
+        Arrays.sort(muestras);
+        return muestras[muestras.length / 2];
     }
 }
@@ -0,0 +1,191 @@
+package com.cashi.auth.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Migra la tabla tokens del JWT completo (token VARCHAR(500)) a su huella SHA-256 (token_hash BINARY(32)).
+ * Hibernate (ddl-auto=update) agrega token_hash; aquí se permite NULL en la columna antigua para que los
+ * nuevos inserts no fallen y se calcula la huella de las filas existentes por rangos de id_token, antes de
+ * aceptar requests. Corre una sola vez: al terminar queda registrada en la tabla migraciones, y mientras corre
+ * la protege un lock con nombre de MySQL para que los demás nodos esperen en lugar de repetirla.
+ * Despliegue gradual: mientras exista la columna antigua, este nodo también la escribe (los nodos de la versión
+ * anterior buscan por token) y rellena periódicamente las filas que esos nodos insertan sin token_hash.
+ * Con auth.tokens.migracion.eliminar-columna=true, una vez que todos los nodos tienen esta versión, se rellenan
+ * las filas pendientes y se elimina la columna antigua (y con ella idx_token).
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Slf4j
+public class TokenHashMigracion {
+
+    private static final String MIGRACION = "tokens_token_hash";
+
+    private static final String CREAR_TABLA_MIGRACIONES =
+            "CREATE TABLE IF NOT EXISTS migraciones (" +
+            "nombre VARCHAR(100) PRIMARY KEY, fecha_aplicacion TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)";
+
+    private static final String NULABLE_COLUMNA_TOKEN =
+            "SELECT is_nullable FROM information_schema.columns " +
+            "WHERE table_schema = DATABASE() AND table_name = 'tokens' AND column_name = 'token'";
+
+    // Por rango de la clave primaria: cada lote recorre solo sus filas en lugar de buscar token_hash IS NULL
+    private static final String RELLENAR_RANGO =
+            "UPDATE tokens SET token_hash = UNHEX(SHA2(token, 256)) " +
+            "WHERE id_token > ? AND id_token <= ? AND token_hash IS NULL AND token IS NOT NULL";
+
+    // Filas insertadas por nodos de la versión anterior: pocas, y se encuentran por idx_token_hash
+    private static final String RELLENAR_PENDIENTES =
+            "UPDATE tokens SET token_hash = UNHEX(SHA2(token, 256)) " +
+            "WHERE token_hash IS NULL AND token IS NOT NULL LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${auth.tokens.migracion.lote:5000}")
+    private int lote;
+
+    @Value("${auth.tokens.migracion.eliminar-columna:false}")
+    private boolean eliminarColumna;
+
+    @Value("${auth.tokens.migracion.espera-lock-segundos:600}")
+    private int esperaLockSegundos;
+
+    @Value("${auth.tokens.migracion.escribir-token:true}")
+    private boolean escribirToken;
+
+    // true mientras exista tokens.token: se escribe junto con token_hash y se rellenan las filas sin huella
+    private volatile boolean columnaLegada;
+
+    @PostConstruct
+    void migrar() {
+        jdbcTemplate.execute(CREAR_TABLA_MIGRACIONES);
+        boolean aplicada = estaAplicada(jdbcTemplate);
+
+        if (jdbcTemplate.queryForList(NULABLE_COLUMNA_TOKEN, String.class).isEmpty()) {
+            // Instalación nueva o columna ya eliminada: no hay nada que rellenar
+            if (!aplicada) {
+                registrar(jdbcTemplate);
+            }
+            return;
+        }
+
+        if (!aplicada || eliminarColumna) {
+            // GET_LOCK pertenece a la conexión: el bloqueo, la migración y su liberación usan la misma
+            jdbcTemplate.execute((ConnectionCallback<Void>) conexion -> {
+                migrarConBloqueo(new JdbcTemplate(new SingleConnectionDataSource(conexion, true)));
+                return null;
+            });
+        }
+        columnaLegada = !jdbcTemplate.queryForList(NULABLE_COLUMNA_TOKEN, String.class).isEmpty();
+        if (columnaLegada) {
+            log.info("Columna tokens.token presente: compatibilidad con nodos de la versión anterior activa " +
+                    "(escribir token: {})", escribirToken);
+        }
+    }
+
+    /**
+     * Escribe el JWT completo en la columna antigua para los nodos de la versión anterior, que buscan por ella.
+     * Se llama en la transacción que insertó el token; no hace nada una vez eliminada la columna.
+     */
+    public void escribirTokenLegado(Long idToken, String tokenStr) {
+        if (!columnaLegada || !escribirToken) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("UPDATE tokens SET token = ? WHERE id_token = ?", tokenStr, idToken);
+        } catch (BadSqlGrammarException e) {
+            // Otro nodo eliminó la columna
+            columnaLegada = false;
+            log.info("Columna tokens.token eliminada; se deja de escribir");
+        }
+    }
+
+    // Los nodos de la versión anterior siguen insertando filas sin token_hash hasta terminar el despliegue
+    @Scheduled(fixedDelayString = "${auth.tokens.migracion.relleno-ms:30000}",
+            initialDelayString = "${auth.tokens.migracion.relleno-ms:30000}")
+    public void rellenarPendientes() {
+        if (!columnaLegada) {
+            return;
+        }
+        try {
+            int rellenados = rellenarPendientes(jdbcTemplate);
+            if (rellenados > 0) {
+                log.info("{} tokens de nodos de la versión anterior actualizados con token_hash", rellenados);
+            }
+        } catch (BadSqlGrammarException e) {
+            columnaLegada = false;
+        }
+    }
+
+    private void migrarConBloqueo(JdbcTemplate jdbc) {
+        Integer bloqueo = jdbc.queryForObject("SELECT GET_LOCK(?, ?)", Integer.class, MIGRACION, esperaLockSegundos);
+        if (bloqueo == null || bloqueo != 1) {
+            throw new IllegalStateException("No se obtuvo el lock de la migración " + MIGRACION);
+        }
+        try {
+            // Otro nodo pudo terminarla mientras este esperaba el lock
+            List<String> nulable = jdbc.queryForList(NULABLE_COLUMNA_TOKEN, String.class);
+            if (!estaAplicada(jdbc) && !nulable.isEmpty()) {
+                rellenar(jdbc, nulable.get(0));
+            }
+            if (eliminarColumna && !jdbc.queryForList(NULABLE_COLUMNA_TOKEN, String.class).isEmpty()) {
+                // Filas que insertaron nodos de la versión anterior después del relleno
+                int pendientes = rellenarPendientes(jdbc);
+                jdbc.execute("ALTER TABLE tokens DROP COLUMN token");
+                log.info("Columna tokens.token eliminada ({} filas pendientes rellenadas antes)", pendientes);
+            }
+        } finally {
+            jdbc.queryForObject("SELECT RELEASE_LOCK(?)", Integer.class, MIGRACION);
+        }
+    }
+
+    private void rellenar(JdbcTemplate jdbc, String nulable) {
+        log.info("Migrando tokens a token_hash...");
+        if ("NO".equalsIgnoreCase(nulable)) {
+            jdbc.execute("ALTER TABLE tokens MODIFY token VARCHAR(500) NULL");
+        }
+
+        // Las filas insertadas después de leer el máximo las rellena rellenarPendientes: los nodos de esta
+        // versión ya las insertan con token_hash, los de la versión anterior no
+        long maxId = jdbc.queryForObject("SELECT COALESCE(MAX(id_token), 0) FROM tokens", Long.class);
+        long total = 0;
+        for (long desde = 0; desde < maxId; desde += lote) {
+            total += jdbc.update(RELLENAR_RANGO, desde, desde + lote);
+        }
+
+        registrar(jdbc);
+        log.info("Migración a token_hash completada. {} tokens actualizados", total);
+    }
+
+    private int rellenarPendientes(JdbcTemplate jdbc) {
+        int total = 0;
+        int actualizados;
+        do {
+            actualizados = jdbc.update(RELLENAR_PENDIENTES, lote);
+            total += actualizados;
+        } while (actualizados == lote);
+        return total;
+    }
+
+    private boolean estaAplicada(JdbcTemplate jdbc) {
+        Integer aplicadas = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM migraciones WHERE nombre = ?", Integer.class, MIGRACION);
+        return aplicadas != null && aplicadas > 0;
+    }
+
+    private void registrar(JdbcTemplate jdbc) {
+        jdbc.update("INSERT IGNORE INTO migraciones (nombre) VALUES (?)", MIGRACION);
+    }
+}
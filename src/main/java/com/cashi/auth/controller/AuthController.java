@@ -4,7 +4,10 @@ import com.cashi.auth.dto.request.LoginRequest;
 import com.cashi.auth.dto.request.RefreshTokenRequest;
 import com.cashi.auth.dto.request.RegistroRequest;
 import com.cashi.auth.dto.response.AuthResponse;
+import com.cashi.auth.dto.response.SesionesResponse;
 import com.cashi.auth.dto.response.UsuarioResponse;
+import com.cashi.auth.security.LoginLimitadoException;
+import com.cashi.auth.security.LoginSaturadoException;
 import com.cashi.auth.service.AuthService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -12,6 +15,8 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -112,6 +117,38 @@ public class AuthController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/sesiones")
+    @Operation(summary = "Listar sesiones activas del usuario autenticado (paginado por cursor)")
+    public ResponseEntity<SesionesResponse> getSesionesActuales(
+            Authentication authentication,
+            @RequestParam(required = false) Long desde,
+            @RequestParam(required = false) Integer limite
+    ) {
+        return ResponseEntity.ok(authService.obtenerSesionesActuales(authentication.getName(), desde, limite));
+    }
+
+    // Cola de verificación de contraseñas llena: responder rápido para no retener hilos
+    @ExceptionHandler(LoginSaturadoException.class)
+    public ResponseEntity<Map<String, String>> handleLoginSaturado(LoginSaturadoException e) {
+        log.warn("Login rechazado por saturación: {}", e.getMessage());
+
+        Map<String, String> response = new HashMap<>();
+        response.put("mensaje", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(response);
+    }
+
+    // Limitador de intentos: se rechaza antes de verificar la contraseña
+    @ExceptionHandler(LoginLimitadoException.class)
+    public ResponseEntity<Map<String, String>> handleLoginLimitado(LoginLimitadoException e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("mensaje", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(response);
+    }
+
     // Métodos auxiliares
 
     private String extractTokenFromRequest(HttpServletRequest request) {
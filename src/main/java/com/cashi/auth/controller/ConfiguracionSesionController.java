@@ -1,11 +1,19 @@
 package com.cashi.auth.controller;
 
 import com.cashi.auth.service.ConfiguracionSesionService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
 
 @RestController
 @RequestMapping("/api/configuracion/sesion")
@@ -13,14 +21,30 @@ import java.util.Map;
 public class ConfiguracionSesionController {
 
     private final ConfiguracionSesionService configuracionService;
+    private final ObjectMapper objectMapper;
+
+    // Cuerpo JSON ya serializado y su ETag, recalculados solo cuando cambia la versión de la configuración
+    private final AtomicReference<RespuestaPrecalculada> respuesta = new AtomicReference<>();
+
+    private record RespuestaPrecalculada(long version, byte[] cuerpo, String etag) {
+    }
 
     /**
      * Obtener todas las configuraciones de sesión
-     * Este endpoint es público para que el frontend pueda obtener los tiempos de timeout
+     * Este endpoint es público para que el frontend pueda obtener los tiempos de timeout.
+     * Lo consultan todas las pestañas abiertas: con If-None-Match responde 304 sin tocar la BD ni serializar.
      */
     @GetMapping
-    public ResponseEntity<Map<String, Integer>> obtenerConfiguraciones() {
-        return ResponseEntity.ok(configuracionService.obtenerTodasLasConfiguraciones());
+    public ResponseEntity<byte[]> obtenerConfiguraciones(WebRequest webRequest) throws JsonProcessingException {
+        RespuestaPrecalculada actual = obtenerRespuesta();
+        if (webRequest.checkNotModified(actual.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.maxAge(30, TimeUnit.SECONDS).cachePublic())
+                .eTag(actual.etag())
+                .body(actual.cuerpo());
     }
 
     /**
@@ -52,4 +76,20 @@ public class ConfiguracionSesionController {
         configuracionService.inicializarConfiguracionesPorDefecto();
         return ResponseEntity.ok("Configuraciones inicializadas exitosamente");
     }
+
+    private RespuestaPrecalculada obtenerRespuesta() throws JsonProcessingException {
+        ConfiguracionSesionService.Snapshot snapshot = configuracionService.obtenerSnapshot();
+        RespuestaPrecalculada actual = respuesta.get();
+        if (actual != null && actual.version() == snapshot.version()) {
+            return actual;
+        }
+
+        // ETag fuerte derivado del contenido: igual en todos los nodos aunque su contador de versión difiera
+        byte[] cuerpo = objectMapper.writeValueAsBytes(snapshot.valores());
+        CRC32 crc = new CRC32();
+        crc.update(cuerpo);
+        RespuestaPrecalculada nueva = new RespuestaPrecalculada(snapshot.version(), cuerpo, Long.toHexString(crc.getValue()));
+        respuesta.set(nueva);
+        return nueva;
+    }
 }
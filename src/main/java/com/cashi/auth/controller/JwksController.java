@@ -0,0 +1,33 @@
+package com.cashi.auth.controller;
+
+import com.cashi.auth.security.JwtKeyRing;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publica las llaves públicas de firma para que otros servicios verifiquen los tokens localmente
+ * y solo consulten /api/auth/validate cuando necesiten saber si un token fue revocado.
+ */
+@RestController
+@RequiredArgsConstructor
+@Tag(name = "Autenticación", description = "Endpoints de autenticación y autorización")
+public class JwksController {
+
+    private final JwtKeyRing keyRing;
+
+    @GetMapping("/.well-known/jwks.json")
+    @Operation(summary = "Obtener llaves públicas de firma (JWKS)")
+    public ResponseEntity<Map<String, Object>> obtenerJwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic())
+                .body(keyRing.getJwks());
+    }
+}
@@ -0,0 +1,91 @@
+package com.cashi.auth.controller;
+
+import com.cashi.auth.security.JwtKeyRing;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/auth/keys")
+@RequiredArgsConstructor
+@Slf4j
+@PreAuthorize("hasRole('ADMIN')")
+@Tag(name = "Llaves JWT", description = "Rotación de llaves de firma sin reiniciar el servicio")
+public class JwtKeyController {
+
+    private final JwtKeyRing keyRing;
+
+    @GetMapping
+    @Operation(summary = "Listar llaves vigentes")
+    public ResponseEntity<Map<String, Object>> obtenerLlaves() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("algoritmo", keyRing.isAsymmetric() ? "asimétrico" : "HMAC");
+        response.put("llaveActiva", keyRing.getActiveKeyId());
+        response.put("llaves", keyRing.getKeyIds());
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping
+    @Operation(summary = "Agregar una llave (opcionalmente como llave de firma)")
+    public ResponseEntity<Map<String, String>> agregarLlave(@RequestBody Map<String, Object> body) {
+        String kid = body.get("kid") instanceof String valor ? valor : null;
+        String secreto = body.get("secreto") instanceof String valor ? valor : null;
+        boolean activar = Boolean.TRUE.equals(body.get("activar"));
+
+        log.info("Solicitud para agregar llave JWT: {}", kid);
+        keyRing.addKey(kid, secreto, activar);
+
+        Map<String, String> response = new HashMap<>();
+        response.put("mensaje", "Llave agregada exitosamente");
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/generar")
+    @Operation(summary = "Generar un par de llaves (modo ES256/EdDSA)")
+    public ResponseEntity<Map<String, String>> generarLlave(@RequestBody Map<String, Object> body) {
+        String kid = body.get("kid") instanceof String valor ? valor : null;
+        boolean activar = Boolean.TRUE.equals(body.get("activar"));
+
+        log.info("Solicitud para generar par de llaves JWT: {}", kid);
+        keyRing.generateKeyPair(kid, activar);
+
+        Map<String, String> response = new HashMap<>();
+        response.put("mensaje", "Par de llaves generado exitosamente");
+        return ResponseEntity.ok(response);
+    }
+
+    @DeleteMapping("/{kid}")
+    @Operation(summary = "Retirar una llave")
+    public ResponseEntity<Map<String, String>> retirarLlave(@PathVariable String kid) {
+        log.info("Solicitud para retirar llave JWT: {}", kid);
+        keyRing.retireKey(kid);
+
+        Map<String, String> response = new HashMap<>();
+        response.put("mensaje", "Llave retirada exitosamente");
+        return ResponseEntity.ok(response);
+    }
+
+    // kid o secreto inválidos, kid repetido o inexistente
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleSolicitudInvalida(IllegalArgumentException e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("mensaje", e.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+    }
+
+    // Operación incompatible con el estado del anillo (modo de firma distinto, retirar la llave activa)
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Map<String, String>> handleEstadoInvalido(IllegalStateException e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("mensaje", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+}
@@ -1,16 +1,22 @@
 package com.cashi.auth.controller;
 
 import com.cashi.auth.dto.response.PermisoResponse;
+import com.cashi.auth.security.DiccionarioPermisos;
+import com.cashi.auth.service.DiccionarioPermisosService;
 import com.cashi.auth.service.PermisoService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/permisos")
@@ -20,6 +26,7 @@ import java.util.Map;
 public class PermisoController {
 
     private final PermisoService permisoService;
+    private final DiccionarioPermisosService diccionarioPermisosService;
 
     @GetMapping
     @Operation(summary = "Obtener todos los permisos disponibles")
@@ -47,4 +54,21 @@ public class PermisoController {
                 permisoService.obtenerPermisosPorCategoria(categoria);
         return ResponseEntity.ok(permisos);
     }
+
+    @GetMapping("/diccionario")
+    @Operation(summary = "Obtener el diccionario de bits de permisos usado en los tokens compactos")
+    public ResponseEntity<Map<String, Object>> obtenerDiccionario(WebRequest webRequest) {
+        DiccionarioPermisos diccionario = diccionarioPermisosService.obtenerDiccionario();
+        if (webRequest.checkNotModified(diccionario.getVersion())) {
+            return null;
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("version", diccionario.getVersion());
+        response.put("bits", diccionario.getBitPorCodigo());
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic())
+                .eTag(diccionario.getVersion())
+                .body(response);
+    }
 }
@@ -1,7 +1,9 @@
 package com.cashi.auth.controller;
 
 import com.cashi.auth.dto.request.UsuarioRequest;
+import com.cashi.auth.dto.response.SesionesResponse;
 import com.cashi.auth.dto.response.UsuarioResponse;
+import com.cashi.auth.service.TokenService;
 import com.cashi.auth.service.UsuarioManagementService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -10,6 +12,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -24,6 +27,7 @@ import java.util.Map;
 public class UsuarioManagementController {
 
     private final UsuarioManagementService usuarioManagementService;
+    private final TokenService tokenService;
 
     @GetMapping
     @Operation(summary = "Obtener todos los usuarios")
@@ -41,6 +45,29 @@ public class UsuarioManagementController {
         return ResponseEntity.ok(usuario);
     }
 
+    // Dispositivos e IPs de otro usuario: solo ADMIN; cada usuario puede ver las suyas
+    @GetMapping("/{id}/sesiones")
+    @PreAuthorize("hasRole('ADMIN') or #id == authentication.principal.idUsuario()")
+    @Operation(summary = "Listar sesiones activas del usuario (paginado por cursor)")
+    public ResponseEntity<SesionesResponse> obtenerSesionesActivas(
+            @PathVariable Long id,
+            @RequestParam(required = false) Long desde,
+            @RequestParam(required = false) Integer limite
+    ) {
+        log.info("Solicitud para listar sesiones activas del usuario con ID: {}", id);
+        return ResponseEntity.ok(tokenService.obtenerSesionesActivasDelUsuario(id, desde, limite));
+    }
+
+    @GetMapping("/sesiones")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Listar sesiones activas de todos los usuarios (paginado por cursor)")
+    public ResponseEntity<SesionesResponse> obtenerTodasSesionesActivas(
+            @RequestParam(required = false) Long desde,
+            @RequestParam(required = false) Integer limite
+    ) {
+        return ResponseEntity.ok(tokenService.obtenerSesionesActivas(desde, limite));
+    }
+
     @PostMapping
     @Operation(summary = "Crear nuevo usuario")
     public ResponseEntity<UsuarioResponse> crearUsuario(@Valid @RequestBody UsuarioRequest request) {
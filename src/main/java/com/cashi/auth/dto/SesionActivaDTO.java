@@ -0,0 +1,24 @@
+package com.cashi.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Proyección del refresh token vigente de una sesión (familia) para listar dispositivos; idToken es la clave del cursor
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SesionActivaDTO {
+
+    private Long idToken;
+    private Long idUsuario;
+    private String nombreUsuario;
+    private Long idFamilia;
+    private String dispositivo;
+    private String ipCliente;
+    private String userAgent;
+    private LocalDateTime fechaCreacion;
+    private LocalDateTime fechaExpiracion;
+}
@@ -0,0 +1,17 @@
+package com.cashi.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Proyección de un token revocado aún no expirado, para cargar el filtro de revocación en memoria
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenRevocadoDTO {
+
+    private byte[] tokenHash;
+    private LocalDateTime fechaExpiracion;
+}
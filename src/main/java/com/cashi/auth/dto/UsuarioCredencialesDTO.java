@@ -0,0 +1,21 @@
+package com.cashi.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Proyección de las columnas de usuarios necesarias para autenticar, sin cargar el grafo de roles
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsuarioCredencialesDTO {
+
+    private Long idUsuario;
+    private String nombreUsuario;
+    private String contrasena;
+    private Boolean activo;
+    private LocalDateTime bloqueadoHasta;
+    private Long tokenEpoch;
+}
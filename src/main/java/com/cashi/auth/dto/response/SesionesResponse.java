@@ -0,0 +1,19 @@
+package com.cashi.auth.dto.response;
+
+import com.cashi.auth.dto.SesionActivaDTO;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SesionesResponse {
+    private List<SesionActivaDTO> sesiones;
+    // idToken desde el que pedir la siguiente página; null si no hay más
+    private Long siguienteCursor;
+}
@@ -0,0 +1,53 @@
+package com.cashi.auth.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Familia de refresh tokens: todos los refresh tokens que descienden de un mismo login.
+ * El JWT lleva el id de la familia ("fam") y su generación ("gen"); solo la generación actual
+ * es válida, así que rotar y revocar son UPDATEs por clave primaria.
+ */
+@Entity
+@Table(name = "familias_refresh", indexes = {
+    @Index(name = "idx_familia_usuario", columnList = "id_usuario"),
+    @Index(name = "idx_familia_fecha_expiracion", columnList = "fecha_expiracion")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FamiliaRefresh {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_familia")
+    private Long idFamilia;
+
+    @Column(name = "id_usuario", nullable = false)
+    private Long idUsuario;
+
+    @Column(name = "generacion", nullable = false)
+    @Builder.Default
+    private Long generacion = 0L;
+
+    @Column(name = "revocada", nullable = false)
+    @Builder.Default
+    private Boolean revocada = false;
+
+    @Column(name = "fecha_creacion", nullable = false, updatable = false)
+    @Builder.Default
+    private LocalDateTime fechaCreacion = LocalDateTime.now();
+
+    @Column(name = "fecha_rotacion")
+    private LocalDateTime fechaRotacion;
+
+    // Expiración del último refresh token emitido; después la familia solo ocupa espacio
+    @Column(name = "fecha_expiracion", nullable = false)
+    private LocalDateTime fechaExpiracion;
+}
@@ -0,0 +1,54 @@
+package com.cashi.auth.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Llave JWT agregada o retirada en tiempo de ejecución. Cada nodo relee la tabla periódicamente
+ * (JwtKeyRing.recargar), así que el anillo es el mismo en todo el cluster y sobrevive a reinicios.
+ * Una fila retirada sin material oculta también una llave configurada con el mismo kid.
+ * El material privado se guarda cifrado (CifradorLlaves); solo la llave pública va en claro.
+ */
+@Entity
+@Table(name = "llaves_jwt")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LlaveJwt {
+
+    @Id
+    @Column(name = "kid", length = 50)
+    private String kid;
+
+    @Column(name = "algoritmo", nullable = false, length = 10)
+    private String algoritmo;
+
+    // HS512: secreto compartido cifrado
+    @Column(name = "secreto_cifrado", length = 1024)
+    private String secretoCifrado;
+
+    // ES256 / EdDSA: llave privada PKCS#8 cifrada y llave pública X.509 en Base64
+    @Column(name = "llave_privada_cifrada", length = 1024)
+    private String llavePrivadaCifrada;
+
+    @Column(name = "llave_publica", length = 1024)
+    private String llavePublica;
+
+    @Column(name = "activa", nullable = false)
+    @Builder.Default
+    private Boolean activa = false;
+
+    @Column(name = "retirada", nullable = false)
+    @Builder.Default
+    private Boolean retirada = false;
+
+    @Column(name = "fecha_creacion", nullable = false, updatable = false)
+    @Builder.Default
+    private LocalDateTime fechaCreacion = LocalDateTime.now();
+}
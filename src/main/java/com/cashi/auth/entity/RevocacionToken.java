@@ -0,0 +1,64 @@
+package com.cashi.auth.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Registro append-only de revocaciones. El id autoincremental es la secuencia que cada nodo
+ * lee incrementalmente para aplicar las revocaciones hechas en otros nodos.
+ */
+@Entity
+@Table(name = "revocaciones_token", indexes = {
+    @Index(name = "idx_revocacion_fecha_registro", columnList = "fecha_registro")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RevocacionToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_revocacion")
+    private Long idRevocacion;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo", nullable = false, length = 20)
+    private TipoRevocacion tipo;
+
+    // TOKEN: huella del token revocado y su expiración
+    @Column(name = "token_hash", columnDefinition = "BINARY(32)")
+    private byte[] tokenHash;
+
+    @Column(name = "fecha_expiracion")
+    private LocalDateTime fechaExpiracion;
+
+    // USUARIO: descartar el snapshot del usuario; con token_epoch, además se revocaron todas sus sesiones
+    @Column(name = "id_usuario")
+    private Long idUsuario;
+
+    @Column(name = "nombre_usuario", length = 50)
+    private String nombreUsuario;
+
+    @Column(name = "token_epoch")
+    private Long tokenEpoch;
+
+    // ROL: el rol cambió o se eliminó; se recompila su perfil y se descartan los snapshots que lo usan
+    @Column(name = "id_rol")
+    private Long idRol;
+
+    @Column(name = "fecha_registro", nullable = false, updatable = false)
+    @Builder.Default
+    private LocalDateTime fechaRegistro = LocalDateTime.now();
+
+    public enum TipoRevocacion {
+        TOKEN,
+        USUARIO,
+        ROL
+    }
+}
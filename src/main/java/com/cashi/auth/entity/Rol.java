@@ -2,8 +2,7 @@ package com.cashi.auth.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
-
-
+import org.hibernate.annotations.BatchSize;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -37,13 +36,17 @@ public class Rol {
     private LocalDateTime fechaCreacion = LocalDateTime.now();
 
     // Relación con Permisos (Many-to-Many)
-    @ManyToMany(fetch = FetchType.EAGER)
+    // LAZY + BatchSize: los permisos de hasta 50 roles se cargan en una sola consulta
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
         name = "roles_permisos",
         joinColumns = @JoinColumn(name = "id_rol"),
         inverseJoinColumns = @JoinColumn(name = "id_permiso")
     )
+    @BatchSize(size = 50)
     @Builder.Default
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Set<Permiso> permisos = new HashSet<>();
 
     // Relación inversa con Usuarios
@@ -54,7 +57,8 @@ public class Rol {
     private Set<Usuario> usuarios = new HashSet<>();
 
     // Relación con Asignaciones
-    @OneToMany(mappedBy = "rol", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "rol", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @BatchSize(size = 50)
     @Builder.Default
     @ToString.Exclude
     @EqualsAndHashCode.Exclude
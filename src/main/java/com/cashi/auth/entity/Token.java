@@ -10,9 +10,10 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "tokens", indexes = {
-    @Index(name = "idx_token", columnList = "token"),
+    @Index(name = "idx_token_hash", columnList = "token_hash", unique = true),
     @Index(name = "idx_usuario_activo", columnList = "id_usuario, activo"),
-    @Index(name = "idx_fecha_expiracion", columnList = "fecha_expiracion")
+    @Index(name = "idx_fecha_expiracion", columnList = "fecha_expiracion"),
+    @Index(name = "idx_token_familia", columnList = "id_familia")
 })
 @Data
 @NoArgsConstructor
@@ -25,8 +26,9 @@ public class Token {
     @Column(name = "id_token")
     private Long idToken;
 
-    @Column(name = "token", unique = true, nullable = false, length = 500)
-    private String token;
+    // SHA-256 del JWT (TokenDigest); el token completo no se persiste
+    @Column(name = "token_hash", columnDefinition = "BINARY(32)")
+    private byte[] tokenHash;
 
     @Enumerated(EnumType.STRING)
     @Column(name = "tipo_token", nullable = false, length = 20)
@@ -59,6 +61,14 @@ public class Token {
     @Column(name = "fecha_revocacion")
     private LocalDateTime fechaRevocacion;
 
+    // Época del usuario al emitir el token; si es menor que usuarios.token_epoch el token quedó revocado
+    @Column(name = "token_epoch")
+    private Long tokenEpoch;
+
+    // Familia de refresh (FamiliaRefresh) del login que emitió el token; al revocarse la familia se revocan sus tokens
+    @Column(name = "id_familia")
+    private Long idFamilia;
+
     // Relación con Usuario
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_usuario", nullable = false)
@@ -2,6 +2,7 @@ package com.cashi.auth.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -9,8 +10,8 @@ import org.springframework.security.core.userdetails.UserDetails;
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Entity
 @Table(name = "usuarios")
@@ -83,14 +84,24 @@ public class Usuario implements UserDetails {
     @Column(name = "bloqueado_hasta")
     private LocalDateTime bloqueadoHasta;
 
+    // Época de tokens: revocar todas las sesiones es incrementarla; los JWT llevan la época en el claim "ep"
+    // No se escribe desde la entidad: solo con el UPDATE atómico de UsuarioRepository.incrementarTokenEpoch
+    @Column(name = "token_epoch", nullable = false, updatable = false)
+    @Builder.Default
+    private Long tokenEpoch = 0L;
+
     // Relación con Roles (Many-to-Many)
-    @ManyToMany(fetch = FetchType.EAGER)
+    // LAZY + BatchSize: al listar usuarios los roles se cargan por lotes, no con un JOIN por usuario
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
         name = "usuarios_roles",
         joinColumns = @JoinColumn(name = "id_usuario"),
         inverseJoinColumns = @JoinColumn(name = "id_rol")
     )
+    @BatchSize(size = 50)
     @Builder.Default
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Set<Rol> roles = new HashSet<>();
 
     // Relación con Tokens
@@ -106,17 +117,13 @@ public class Usuario implements UserDetails {
     public Collection<? extends GrantedAuthority> getAuthorities() {
         Set<GrantedAuthority> authorities = new HashSet<>();
 
-        // Agregar roles
-        authorities.addAll(roles.stream()
-            .map(rol -> new SimpleGrantedAuthority("ROLE_" + rol.getNombreRol()))
-            .collect(Collectors.toSet()));
-
-        // Agregar permisos de cada rol
-        roles.forEach(rol -> {
-            authorities.addAll(rol.getPermisos().stream()
-                .map(permiso -> new SimpleGrantedAuthority(permiso.getCodigoPermiso()))
-                .collect(Collectors.toSet()));
-        });
+        // Agregar roles y permisos de cada rol en una sola pasada
+        for (Rol rol : roles) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + rol.getNombreRol()));
+            for (Permiso permiso : rol.getPermisos()) {
+                authorities.add(new SimpleGrantedAuthority(permiso.getCodigoPermiso()));
+            }
+        }
 
         return authorities;
     }
@@ -181,4 +188,19 @@ public class Usuario implements UserDetails {
     public void actualizarUltimoAcceso() {
         this.ultimoAcceso = LocalDateTime.now();
     }
+
+    // Asignación (tenant/cartera/subcartera) del primer rol, priorizando la más completa
+    public Optional<RolAsignacion> obtenerAsignacionPrincipal() {
+        if (roles.isEmpty()) {
+            return Optional.empty();
+        }
+        Rol primerRol = roles.iterator().next();
+        if (primerRol.getAsignaciones().isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(primerRol.getAsignaciones().stream()
+                .filter(a -> a.getSubPortfolioId() != null)
+                .findFirst()
+                .orElse(primerRol.getAsignaciones().iterator().next()));
+    }
 }
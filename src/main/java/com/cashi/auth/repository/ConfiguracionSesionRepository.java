@@ -4,6 +4,7 @@ import com.cashi.auth.entity.ConfiguracionSesion;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +13,6 @@ public interface ConfiguracionSesionRepository extends JpaRepository<Configuraci
     Optional<ConfiguracionSesion> findByClave(String clave);
 
     Optional<ConfiguracionSesion> findByClaveAndActivoTrue(String clave);
+
+    List<ConfiguracionSesion> findByActivoTrue();
 }
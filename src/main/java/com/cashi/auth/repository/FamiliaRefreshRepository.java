@@ -0,0 +1,53 @@
+package com.cashi.auth.repository;
+
+import com.cashi.auth.entity.FamiliaRefresh;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FamiliaRefreshRepository extends JpaRepository<FamiliaRefresh, Long> {
+
+    // Rotación condicional: solo avanza si la generación presentada es la actual; 0 filas = ya rotada o revocada
+    @Modifying
+    @Query("UPDATE FamiliaRefresh f SET f.generacion = f.generacion + 1, f.fechaRotacion = :ahora, " +
+           "f.fechaExpiracion = :fechaExpiracion " +
+           "WHERE f.idFamilia = :idFamilia AND f.generacion = :generacion AND f.revocada = false")
+    int rotar(@Param("idFamilia") Long idFamilia,
+              @Param("generacion") Long generacion,
+              @Param("ahora") LocalDateTime ahora,
+              @Param("fechaExpiracion") LocalDateTime fechaExpiracion);
+
+    // Lectura con lock compartido: ve la última rotación confirmada aunque la transacción ya tenga su snapshot
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT f FROM FamiliaRefresh f WHERE f.idFamilia = :idFamilia")
+    Optional<FamiliaRefresh> findActual(@Param("idFamilia") Long idFamilia);
+
+    @Modifying
+    @Query("UPDATE FamiliaRefresh f SET f.revocada = true WHERE f.idFamilia = :idFamilia AND f.revocada = false")
+    int revocar(@Param("idFamilia") Long idFamilia);
+
+    long countByFechaExpiracionBefore(LocalDateTime fechaLimite);
+
+    // Siguiente lote de la purga por keyset (fecha_expiracion, id_familia) sobre idx_familia_fecha_expiracion
+    @Query("SELECT f.fechaExpiracion, f.idFamilia FROM FamiliaRefresh f WHERE f.fechaExpiracion < :fechaLimite " +
+           "AND (f.fechaExpiracion > :ultimaFecha OR (f.fechaExpiracion = :ultimaFecha AND f.idFamilia > :ultimoId)) " +
+           "ORDER BY f.fechaExpiracion, f.idFamilia")
+    List<Object[]> findClavesParaPurga(@Param("fechaLimite") LocalDateTime fechaLimite,
+                                       @Param("ultimaFecha") LocalDateTime ultimaFecha,
+                                       @Param("ultimoId") Long ultimoId,
+                                       Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM FamiliaRefresh f WHERE f.idFamilia IN :ids")
+    int eliminarPorIds(@Param("ids") List<Long> ids);
+}
@@ -0,0 +1,19 @@
+package com.cashi.auth.repository;
+
+import com.cashi.auth.entity.LlaveJwt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface LlaveJwtRepository extends JpaRepository<LlaveJwt, String> {
+
+    // Una sola sentencia: nunca quedan dos llaves activas
+    @Transactional
+    @Modifying
+    @Query("UPDATE LlaveJwt l SET l.activa = CASE WHEN l.kid = :kid THEN true ELSE false END")
+    int activar(@Param("kid") String kid);
+}
@@ -2,6 +2,8 @@ package com.cashi.auth.repository;
 
 import com.cashi.auth.entity.Permiso;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,4 +19,7 @@ public interface PermisoRepository extends JpaRepository<Permiso, Long> {
     List<Permiso> findByActivoTrueOrderByOrdenVisualizacion();
 
     Boolean existsByCodigoPermiso(String codigoPermiso);
+
+    @Query("SELECT p.codigoPermiso FROM Rol r JOIN r.permisos p WHERE r.idRol = :idRol")
+    List<String> findCodigosByIdRol(@Param("idRol") Long idRol);
 }
@@ -0,0 +1,45 @@
+package com.cashi.auth.repository;
+
+import com.cashi.auth.dto.TokenRevocadoDTO;
+import com.cashi.auth.entity.RevocacionToken;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RevocacionTokenRepository extends JpaRepository<RevocacionToken, Long> {
+
+    // Lectura incremental por la clave primaria desde la marca de agua del nodo
+    @Query("SELECT r FROM RevocacionToken r WHERE r.idRevocacion > :desde ORDER BY r.idRevocacion")
+    List<RevocacionToken> findSiguientes(@Param("desde") Long desde, Pageable pageable);
+
+    @Query("SELECT COALESCE(MAX(r.idRevocacion), 0) FROM RevocacionToken r")
+    Long findMaxIdRevocacion();
+
+    // Revocaciones de tokens aún vigentes: en modo solo-refresh el access token revocado existe únicamente aquí
+    @Query("SELECT new com.cashi.auth.dto.TokenRevocadoDTO(r.tokenHash, r.fechaExpiracion) FROM RevocacionToken r " +
+           "WHERE r.tipo = com.cashi.auth.entity.RevocacionToken$TipoRevocacion.TOKEN " +
+           "AND r.fechaExpiracion > :now AND r.tokenHash IS NOT NULL")
+    List<TokenRevocadoDTO> findTokensRevocadosVigentes(@Param("now") LocalDateTime now);
+
+    long countByFechaRegistroBefore(LocalDateTime fechaLimite);
+
+    // Siguiente lote de la purga por keyset (fecha_registro, id_revocacion) sobre idx_revocacion_fecha_registro
+    @Query("SELECT r.fechaRegistro, r.idRevocacion FROM RevocacionToken r WHERE r.fechaRegistro < :fechaLimite " +
+           "AND (r.fechaRegistro > :ultimaFecha OR (r.fechaRegistro = :ultimaFecha AND r.idRevocacion > :ultimoId)) " +
+           "ORDER BY r.fechaRegistro, r.idRevocacion")
+    List<Object[]> findClavesParaPurga(@Param("fechaLimite") LocalDateTime fechaLimite,
+                                       @Param("ultimaFecha") LocalDateTime ultimaFecha,
+                                       @Param("ultimoId") Long ultimoId,
+                                       Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM RevocacionToken r WHERE r.idRevocacion IN :ids")
+    int eliminarPorIds(@Param("ids") List<Long> ids);
+}
@@ -1,10 +1,14 @@
 package com.cashi.auth.repository;
 
+import com.cashi.auth.dto.SesionActivaDTO;
+import com.cashi.auth.dto.TokenRevocadoDTO;
 import com.cashi.auth.entity.Token;
 import com.cashi.auth.entity.Usuario;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -14,23 +18,75 @@ import java.util.Optional;
 @Repository
 public interface TokenRepository extends JpaRepository<Token, Long> {
 
-    Optional<Token> findByToken(String token);
+    Optional<Token> findByTokenHash(byte[] tokenHash);
+
+    // Último refresh token persistido de la familia (idx_token_familia); su dispositivo pasa a la siguiente rotación
+    Optional<Token> findFirstByIdFamiliaAndTipoTokenOrderByIdTokenDesc(Long idFamilia, Token.TipoToken tipoToken);
 
     List<Token> findByUsuarioAndActivoTrue(Usuario usuario);
 
-    List<Token> findByUsuarioIdUsuario(Long idUsuario);
+    /*
+     * Sesiones vigentes por keyset sobre id_token descendente (las más recientes primero). El filtro va en la BD,
+     * incluida la época: un token emitido antes de revocar todas las sesiones ya no cuenta aunque siga activo.
+     * Una sesión es el refresh token activo de su familia (la rotación retira el anterior); los access tokens
+     * emitidos en cada refresh no cuentan. Por usuario se resuelve con idx_usuario_activo, que en InnoDB ya
+     * termina en id_token.
+     */
+    @Query("SELECT new com.cashi.auth.dto.SesionActivaDTO(t.idToken, u.idUsuario, u.nombreUsuario, t.idFamilia, " +
+           "t.dispositivo, t.ipCliente, t.userAgent, t.fechaCreacion, t.fechaExpiracion) " +
+           "FROM Token t JOIN t.usuario u " +
+           "WHERE u.idUsuario = :idUsuario AND t.tipoToken = com.cashi.auth.entity.Token$TipoToken.REFRESH " +
+           "AND t.activo = true AND t.revocado = false " +
+           "AND t.fechaExpiracion > :ahora AND COALESCE(t.tokenEpoch, 0) = u.tokenEpoch AND t.idToken < :desde " +
+           "ORDER BY t.idToken DESC")
+    List<SesionActivaDTO> findSesionesActivasDelUsuario(@Param("idUsuario") Long idUsuario,
+                                                        @Param("ahora") LocalDateTime ahora,
+                                                        @Param("desde") Long desde,
+                                                        Pageable pageable);
+
+    @Query("SELECT new com.cashi.auth.dto.SesionActivaDTO(t.idToken, u.idUsuario, u.nombreUsuario, t.idFamilia, " +
+           "t.dispositivo, t.ipCliente, t.userAgent, t.fechaCreacion, t.fechaExpiracion) " +
+           "FROM Token t JOIN t.usuario u " +
+           "WHERE t.tipoToken = com.cashi.auth.entity.Token$TipoToken.REFRESH AND t.activo = true AND t.revocado = false " +
+           "AND t.fechaExpiracion > :ahora AND COALESCE(t.tokenEpoch, 0) = u.tokenEpoch AND t.idToken < :desde " +
+           "ORDER BY t.idToken DESC")
+    List<SesionActivaDTO> findSesionesActivas(@Param("ahora") LocalDateTime ahora,
+                                              @Param("desde") Long desde,
+                                              Pageable pageable);
 
     @Query("SELECT t FROM Token t WHERE t.usuario.idUsuario = :idUsuario AND t.tipoToken = :tipoToken AND t.activo = true AND t.revocado = false")
     List<Token> findTokensActivosPorUsuarioYTipo(Long idUsuario, Token.TipoToken tipoToken);
 
-    @Query("SELECT t FROM Token t WHERE t.fechaExpiracion < :now AND t.activo = true")
-    List<Token> findTokensExpirados(LocalDateTime now);
+    @Query("SELECT new com.cashi.auth.dto.TokenRevocadoDTO(t.tokenHash, t.fechaExpiracion) FROM Token t " +
+           "WHERE (t.revocado = true OR t.activo = false) AND t.fechaExpiracion > :now AND t.tokenHash IS NOT NULL")
+    List<TokenRevocadoDTO> findTokensRevocadosVigentes(LocalDateTime now);
 
+    @Query("SELECT new com.cashi.auth.dto.TokenRevocadoDTO(t.tokenHash, t.fechaExpiracion) FROM Token t " +
+           "WHERE t.idFamilia = :idFamilia AND t.fechaExpiracion > :now AND t.tokenHash IS NOT NULL")
+    List<TokenRevocadoDTO> findTokensVigentesDeFamilia(@Param("idFamilia") Long idFamilia, @Param("now") LocalDateTime now);
+
+    // Retira un refresh token ya rotado; 0 filas = otra petición lo retiró antes
     @Modifying
-    @Query("UPDATE Token t SET t.activo = false, t.revocado = true, t.fechaRevocacion = :now WHERE t.usuario.idUsuario = :idUsuario")
-    void revocarTodosLosTokensDelUsuario(Long idUsuario, LocalDateTime now);
+    @Query("UPDATE Token t SET t.activo = false WHERE t.tokenHash = :tokenHash AND t.activo = true")
+    int retirar(@Param("tokenHash") byte[] tokenHash);
+
+    @Modifying
+    @Query("UPDATE Token t SET t.activo = false, t.revocado = true, t.fechaRevocacion = :now " +
+           "WHERE t.idFamilia = :idFamilia AND t.revocado = false")
+    int revocarPorFamilia(@Param("idFamilia") Long idFamilia, @Param("now") LocalDateTime now);
+
+    long countByFechaExpiracionBefore(LocalDateTime fechaLimite);
+
+    // Siguiente lote de la purga por keyset (fecha_expiracion, id_token): recorre idx_fecha_expiracion sin OFFSET
+    @Query("SELECT t.fechaExpiracion, t.idToken FROM Token t WHERE t.fechaExpiracion < :fechaLimite " +
+           "AND (t.fechaExpiracion > :ultimaFecha OR (t.fechaExpiracion = :ultimaFecha AND t.idToken > :ultimoId)) " +
+           "ORDER BY t.fechaExpiracion, t.idToken")
+    List<Object[]> findClavesParaPurga(@Param("fechaLimite") LocalDateTime fechaLimite,
+                                       @Param("ultimaFecha") LocalDateTime ultimaFecha,
+                                       @Param("ultimoId") Long ultimoId,
+                                       Pageable pageable);
 
     @Modifying
-    @Query("DELETE FROM Token t WHERE t.fechaExpiracion < :fechaLimite")
-    void eliminarTokensExpirados(LocalDateTime fechaLimite);
+    @Query("DELETE FROM Token t WHERE t.idToken IN :ids")
+    int eliminarPorIds(@Param("ids") List<Long> ids);
 }
@@ -1,7 +1,9 @@
 package com.cashi.auth.repository;
 
+import com.cashi.auth.dto.UsuarioCredencialesDTO;
 import com.cashi.auth.entity.Usuario;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -14,11 +16,20 @@ import java.util.Optional;
 @Repository
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 
-    // Query con EntityGraph para forzar carga de roles, permisos y asignaciones
+    // Solo trae usuario + roles (una fila por rol). Permisos y asignaciones se cargan por lotes
+    // al accederlos (@BatchSize en Rol): una consulta por nivel en lugar de roles × permisos × asignaciones
     @Query("SELECT u FROM Usuario u WHERE u.nombreUsuario = :nombreUsuario")
-    @EntityGraph(attributePaths = {"roles", "roles.permisos", "roles.asignaciones"})
+    @EntityGraph(attributePaths = {"roles"})
     Optional<Usuario> findByNombreUsuarioWithRoles(@Param("nombreUsuario") String nombreUsuario);
 
+    // Solo las columnas necesarias para autenticar; los roles se resuelven como perfiles compartidos
+    @Query("SELECT new com.cashi.auth.dto.UsuarioCredencialesDTO(u.idUsuario, u.nombreUsuario, u.contrasena, u.activo, u.bloqueadoHasta, u.tokenEpoch) " +
+           "FROM Usuario u WHERE u.nombreUsuario = :nombreUsuario")
+    Optional<UsuarioCredencialesDTO> findCredencialesByNombreUsuario(@Param("nombreUsuario") String nombreUsuario);
+
+    @Query("SELECT r.idRol FROM Usuario u JOIN u.roles r WHERE u.idUsuario = :idUsuario")
+    List<Long> findRolIdsByIdUsuario(@Param("idUsuario") Long idUsuario);
+
     Optional<Usuario> findByNombreUsuario(String nombreUsuario);
 
     Optional<Usuario> findByEmail(String email);
@@ -33,6 +44,22 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 
     List<Usuario> findByActivoFalse();
 
+    // Persistir solo la transición a bloqueado; los fallos intermedios se cuentan en memoria (LoginThrottle)
+    @Modifying
+    @Query("UPDATE Usuario u SET u.bloqueadoHasta = :hasta, u.intentosFallidos = :intentos WHERE u.idUsuario = :idUsuario")
+    int bloquearUsuario(@Param("idUsuario") Long idUsuario, @Param("hasta") LocalDateTime hasta, @Param("intentos") int intentos);
+
+    // Revocar todas las sesiones del usuario: una sola fila, sin importar cuántos tokens tenga
+    @Modifying
+    @Query("UPDATE Usuario u SET u.tokenEpoch = u.tokenEpoch + 1 WHERE u.idUsuario = :idUsuario")
+    int incrementarTokenEpoch(@Param("idUsuario") Long idUsuario);
+
+    @Query("SELECT u.tokenEpoch FROM Usuario u WHERE u.idUsuario = :idUsuario")
+    Optional<Long> findTokenEpochByIdUsuario(@Param("idUsuario") Long idUsuario);
+
+    @Query("SELECT u.nombreUsuario FROM Usuario u WHERE u.idUsuario = :idUsuario")
+    Optional<String> findNombreUsuarioByIdUsuario(@Param("idUsuario") Long idUsuario);
+
     @Query("SELECT u FROM Usuario u WHERE u.bloqueadoHasta IS NOT NULL AND u.bloqueadoHasta > :now")
     List<Usuario> findUsuariosBloqueados(LocalDateTime now);
 
@@ -0,0 +1,42 @@
+package com.cashi.auth.security;
+
+import com.cashi.auth.service.DiccionarioPermisosService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.PermissionEvaluator;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+
+/**
+ * Evalúa {@code @PreAuthorize("hasPermission(null, 'CODIGO_PERMISO')")} con una prueba de bit
+ * en lugar de recorrer la colección de authorities.
+ */
+@Component
+@RequiredArgsConstructor
+public class BitsetPermissionEvaluator implements PermissionEvaluator {
+
+    private final DiccionarioPermisosService diccionarioPermisosService;
+
+    @Override
+    public boolean hasPermission(Authentication authentication, Object targetDomainObject, Object permission) {
+        if (authentication == null || permission == null) {
+            return false;
+        }
+        String codigo = permission.toString();
+
+        if (authentication instanceof PermisosAuthenticationToken token) {
+            int bit = diccionarioPermisosService.obtenerDiccionario().bitDe(codigo);
+            return token.getPermisos().contiene(bit);
+        }
+
+        // Autenticaciones creadas fuera del filtro JWT
+        return authentication.getAuthorities().stream()
+                .anyMatch(auth -> codigo.equals(auth.getAuthority()));
+    }
+
+    @Override
+    public boolean hasPermission(Authentication authentication, Serializable targetId, String targetType, Object permission) {
+        return hasPermission(authentication, null, permission);
+    }
+}
@@ -0,0 +1,89 @@
+package com.cashi.auth.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Cifra el material de las llaves JWT guardadas en llaves_jwt (secretos HMAC y llaves privadas) con AES-256-GCM.
+ * La llave de cifrado viene de jwt.keys.encryption-key (variable de entorno o KMS) y nunca se guarda en la BD:
+ * quien lea la tabla, un respaldo o una réplica no obtiene material para firmar tokens.
+ * El kid va como dato autenticado, así que el material de una fila no se puede copiar a otra.
+ */
+@Component
+public class CifradorLlaves {
+
+    private static final String TRANSFORMACION = "AES/GCM/NoPadding";
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final int LLAVE_BYTES = 32;
+
+    private final SecretKey llave;
+    private final SecureRandom random = new SecureRandom();
+
+    public CifradorLlaves(@Value("${jwt.keys.encryption-key:}") String llaveBase64) {
+        if (llaveBase64 == null || llaveBase64.isBlank()) {
+            this.llave = null;
+            return;
+        }
+        byte[] bytes = Base64.getDecoder().decode(llaveBase64.trim());
+        if (bytes.length != LLAVE_BYTES) {
+            throw new IllegalStateException("jwt.keys.encryption-key debe ser de " + LLAVE_BYTES + " bytes en Base64");
+        }
+        this.llave = new SecretKeySpec(bytes, "AES");
+    }
+
+    public boolean isConfigurado() {
+        return llave != null;
+    }
+
+    // Base64(iv || texto cifrado || tag)
+    public String cifrar(String kid, byte[] material) {
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        try {
+            Cipher cipher = iniciar(Cipher.ENCRYPT_MODE, kid, iv);
+            byte[] cifrado = cipher.doFinal(material);
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(IV_BYTES + cifrado.length)
+                    .put(iv)
+                    .put(cifrado)
+                    .array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo cifrar la llave JWT " + kid + ": " + e.getMessage(), e);
+        }
+    }
+
+    public byte[] descifrar(String kid, String cifradoBase64) {
+        byte[] datos = Base64.getDecoder().decode(cifradoBase64);
+        if (datos.length <= IV_BYTES) {
+            throw new IllegalStateException("Material cifrado inválido para la llave JWT " + kid);
+        }
+        try {
+            Cipher cipher = iniciar(Cipher.DECRYPT_MODE, kid, Arrays.copyOf(datos, IV_BYTES));
+            return cipher.doFinal(datos, IV_BYTES, datos.length - IV_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo descifrar la llave JWT " + kid + ": " + e.getMessage(), e);
+        }
+    }
+
+    private Cipher iniciar(int modo, String kid, byte[] iv) throws GeneralSecurityException {
+        if (llave == null) {
+            throw new IllegalStateException("jwt.keys.encryption-key no configurada; " +
+                    "las llaves JWT en tiempo de ejecución requieren cifrado");
+        }
+        Cipher cipher = Cipher.getInstance(TRANSFORMACION);
+        cipher.init(modo, llave, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+        return cipher;
+    }
+}
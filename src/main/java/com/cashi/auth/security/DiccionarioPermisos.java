@@ -0,0 +1,80 @@
+package com.cashi.auth.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Diccionario inmutable código de permiso -> posición de bit.
+ * La posición es el id del permiso, que nunca se reutiliza, así que un token sigue siendo
+ * decodificable aunque luego se agreguen permisos nuevos (cambia la versión, no los bits existentes).
+ */
+public final class DiccionarioPermisos {
+
+    private final String version;
+    private final Map<String, Integer> bitPorCodigo;
+    private final String[] codigoPorBit;
+
+    public DiccionarioPermisos(Map<Integer, String> codigos) {
+        int maxBit = codigos.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1);
+        this.codigoPorBit = new String[maxBit + 1];
+        Map<String, Integer> bits = new LinkedHashMap<>();
+        CRC32 crc = new CRC32();
+        codigos.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    codigoPorBit[entry.getKey()] = entry.getValue();
+                    bits.put(entry.getValue(), entry.getKey());
+                    crc.update((entry.getKey() + ":" + entry.getValue() + ";").getBytes(StandardCharsets.UTF_8));
+                });
+        this.bitPorCodigo = Collections.unmodifiableMap(bits);
+        this.version = Long.toHexString(crc.getValue());
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Map<String, Integer> getBitPorCodigo() {
+        return bitPorCodigo;
+    }
+
+    // Posición del permiso o -1 si no existe en el diccionario
+    public int bitDe(String codigo) {
+        Integer bit = bitPorCodigo.get(codigo);
+        return bit != null ? bit : -1;
+    }
+
+    public BitSet toBitSet(Collection<String> codigos) {
+        BitSet bits = new BitSet(codigoPorBit.length);
+        for (String codigo : codigos) {
+            int bit = bitDe(codigo);
+            if (bit >= 0) {
+                bits.set(bit);
+            }
+        }
+        return bits;
+    }
+
+    public String encode(Collection<String> codigos) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(toBitSet(codigos).toByteArray());
+    }
+
+    public List<String> decode(String encoded) {
+        BitSet bits = BitSet.valueOf(Base64.getUrlDecoder().decode(encoded));
+        List<String> codigos = new ArrayList<>(bits.cardinality());
+        for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+            if (bit < codigoPorBit.length && codigoPorBit[bit] != null) {
+                codigos.add(codigoPorBit[bit]);
+            }
+        }
+        return codigos;
+    }
+}
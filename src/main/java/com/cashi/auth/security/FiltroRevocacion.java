@@ -0,0 +1,122 @@
+package com.cashi.auth.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Estado de revocación de tokens en memoria, indexado por la huella SHA-256 del token ({@link TokenDigest}).
+ * Un filtro de Bloom responde "seguro no revocado" para casi todos los tokens sin tocar el conjunto exacto;
+ * solo un acierto del filtro consulta el mapa exacto (huella -> expiración). Las entradas se retienen hasta
+ * la expiración del token y el filtro se reconstruye periódicamente sin ellas.
+ * Métricas: auth.tokens.revocados (entradas vigentes), auth.tokens.revocacion.falsos-positivos.
+ */
+@Component
+@Slf4j
+public class FiltroRevocacion {
+
+    private static final int FUNCIONES_HASH = 4;
+
+    private final int bits;
+    private final Map<String, Long> revocados = new ConcurrentHashMap<>();
+    private final AtomicReference<AtomicLongArray> filtro = new AtomicReference<>();
+    private final Counter falsosPositivosCounter;
+
+    public FiltroRevocacion(MeterRegistry meterRegistry, @Value("${auth.tokens.revocacion.filtro-bits:1048576}") int bits) {
+        this.bits = Math.max(Long.SIZE, bits);
+        this.filtro.set(nuevoFiltro());
+        Gauge.builder("auth.tokens.revocados", revocados, Map::size)
+                .description("Tokens revocados retenidos en memoria hasta su expiración")
+                .register(meterRegistry);
+        this.falsosPositivosCounter = Counter.builder("auth.tokens.revocacion.falsos-positivos")
+                .description("Aciertos del filtro de Bloom descartados por el conjunto exacto")
+                .register(meterRegistry);
+    }
+
+    public void revocar(byte[] huella, long expiracionMillis) {
+        if (expiracionMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        // Primero el conjunto exacto: una reconstrucción concurrente del filtro siempre lo vuelve a leer
+        revocados.merge(clave(huella), expiracionMillis, Math::max);
+        agregar(filtro.get(), huella);
+    }
+
+    public boolean estaRevocado(byte[] huella) {
+        if (!contiene(filtro.get(), huella)) {
+            return false;
+        }
+        if (revocados.containsKey(clave(huella))) {
+            return true;
+        }
+        falsosPositivosCounter.increment();
+        return false;
+    }
+
+    // Quitar las entradas expiradas y reconstruir el filtro solo con las vigentes
+    @Scheduled(fixedDelayString = "${auth.tokens.revocacion.purga-ms:60000}")
+    public void purgarExpirados() {
+        long ahora = System.currentTimeMillis();
+        int antes = revocados.size();
+        revocados.values().removeIf(expiracion -> expiracion <= ahora);
+
+        AtomicLongArray nuevo = nuevoFiltro();
+        revocados.keySet().forEach(clave -> agregar(nuevo, Base64.getDecoder().decode(clave)));
+        filtro.set(nuevo);
+        // Revocaciones que escribieron en el filtro anterior mientras se reconstruía
+        revocados.keySet().forEach(clave -> agregar(nuevo, Base64.getDecoder().decode(clave)));
+
+        int purgados = antes - revocados.size();
+        if (purgados > 0) {
+            log.debug("Filtro de revocación: {} entradas expiradas purgadas, {} vigentes", purgados, revocados.size());
+        }
+    }
+
+    private AtomicLongArray nuevoFiltro() {
+        return new AtomicLongArray((bits + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    // La huella ya es uniforme: cada función hash es un tramo distinto de 8 bytes
+    private void agregar(AtomicLongArray destino, byte[] huella) {
+        ByteBuffer buffer = ByteBuffer.wrap(huella);
+        for (int i = 0; i < FUNCIONES_HASH; i++) {
+            int bit = posicion(buffer.getLong(i * Long.BYTES));
+            int palabra = bit / Long.SIZE;
+            long mascara = 1L << (bit % Long.SIZE);
+            long actual;
+            do {
+                actual = destino.get(palabra);
+            } while ((actual & mascara) == 0 && !destino.compareAndSet(palabra, actual, actual | mascara));
+        }
+    }
+
+    private boolean contiene(AtomicLongArray origen, byte[] huella) {
+        ByteBuffer buffer = ByteBuffer.wrap(huella);
+        for (int i = 0; i < FUNCIONES_HASH; i++) {
+            int bit = posicion(buffer.getLong(i * Long.BYTES));
+            if ((origen.get(bit / Long.SIZE) & (1L << (bit % Long.SIZE))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int posicion(long hash) {
+        return (int) Math.floorMod(hash, (long) bits);
+    }
+
+    private String clave(byte[] huella) {
+        return Base64.getEncoder().encodeToString(huella);
+    }
+}
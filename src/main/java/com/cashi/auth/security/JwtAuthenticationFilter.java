@@ -1,6 +1,7 @@
 package com.cashi.auth.security;
 
 import com.cashi.auth.service.CustomUserDetailsService;
+import com.cashi.auth.service.DiccionarioPermisosService;
 import com.cashi.auth.service.TokenService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -8,8 +9,11 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -17,6 +21,9 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 @Component
 @RequiredArgsConstructor
@@ -26,6 +33,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
     private final TokenService tokenService;
+    private final DiccionarioPermisosService diccionarioPermisosService;
+
+    // Autenticar solo con los claims del token, sin cargar el usuario desde la BD
+    @Value("${jwt.claims-only-auth:false}")
+    private boolean claimsOnlyAuth;
 
     @Override
     protected void doFilterInternal(
@@ -36,25 +48,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = extractJwtFromRequest(request);
 
-            if (jwt != null && jwtUtil.validateToken(jwt) && tokenService.esTokenValido(jwt)) {
-                String username = jwtUtil.extractUsername(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            // Firma y claims se verifican una sola vez por request
+            VerifiedToken verified = jwt != null ? jwtUtil.verifyToken(jwt).orElse(null) : null;
 
-                if (jwtUtil.validateToken(jwt, userDetails)) {
-                    UsernamePasswordAuthenticationToken authentication =
-                            new UsernamePasswordAuthenticationToken(
-                                    userDetails,
-                                    null,
-                                    userDetails.getAuthorities()
-                            );
+            // Un refresh token nunca autentica un request, aunque siga vigente
+            if (verified != null && !verified.isRefresh() && tokenService.esTokenValido(verified, jwt)) {
+                String username = verified.subject();
 
-                    authentication.setDetails(
-                            new WebAuthenticationDetailsSource().buildDetails(request)
-                    );
-
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                    log.debug("Usuario autenticado: {}", username);
+                // Tokens emitidos antes de incluir "uid" siguen el camino con carga de usuario
+                if (claimsOnlyAuth && verified.idUsuario() != null) {
+                    authenticateFromClaims(verified, request);
+                } else {
+                    authenticateFromUserDetails(username, request);
                 }
             }
         } catch (Exception e) {
@@ -64,6 +69,58 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private void authenticateFromUserDetails(String username, HttpServletRequest request) {
+        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+
+        if (username.equals(userDetails.getUsername())) {
+            Collection<? extends GrantedAuthority> authorities = userDetails.getAuthorities();
+            // Los snapshots ya traen los bits compilados desde sus perfiles de rol
+            PermisosCompilados permisos = userDetails instanceof UsuarioSnapshot snapshot
+                    ? snapshot.permisosCompilados()
+                    : compilarPermisos(authorities.stream()
+                            .map(GrantedAuthority::getAuthority)
+                            .filter(auth -> !auth.startsWith("ROLE_"))
+                            .toList());
+            UsernamePasswordAuthenticationToken authentication =
+                    new PermisosAuthenticationToken(
+                            userDetails,
+                            authorities,
+                            permisos
+                    );
+
+            authentication.setDetails(
+                    new WebAuthenticationDetailsSource().buildDetails(request)
+            );
+
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+            log.debug("Usuario autenticado: {}", username);
+        }
+    }
+
+    private void authenticateFromClaims(VerifiedToken verified, HttpServletRequest request) {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        verified.roles().forEach(rol -> authorities.add(new SimpleGrantedAuthority("ROLE_" + rol)));
+        verified.permisos().forEach(permiso -> authorities.add(new SimpleGrantedAuthority(permiso)));
+
+        UsernamePasswordAuthenticationToken authentication =
+                new PermisosAuthenticationToken(
+                        UsuarioPrincipal.from(verified),
+                        authorities,
+                        compilarPermisos(verified.permisos())
+                );
+
+        authentication.setDetails(
+                new WebAuthenticationDetailsSource().buildDetails(request)
+        );
+
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        log.debug("Usuario autenticado por claims: {}", verified.subject());
+    }
+
+    private PermisosCompilados compilarPermisos(Collection<String> codigos) {
+        return PermisosCompilados.of(diccionarioPermisosService.obtenerDiccionario().toBitSet(codigos));
+    }
+
     private String extractJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
 
@@ -0,0 +1,343 @@
+package com.cashi.auth.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwk;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import com.cashi.auth.entity.LlaveJwt;
+import com.cashi.auth.repository.LlaveJwtRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Anillo de llaves indexado por "kid".
+ * Se firma siempre con la llave activa y se verifica con cualquiera de las llaves vigentes,
+ * de modo que rotar la llave no invalida de golpe los tokens ya emitidos.
+ * En modo asimétrico (ES256 / EdDSA) las llaves públicas se publican como JWKS.
+ * Las llaves configuradas son la base; las agregadas o retiradas en tiempo de ejecución se guardan en
+ * llaves_jwt y cada nodo las relee cada jwt.keys.poll-ms. Para rotar sin rechazos entre nodos: agregar la
+ * llave sin activar, esperar un intervalo de sondeo y luego activarla.
+ * El material privado de llaves_jwt se guarda cifrado con jwt.keys.encryption-key ({@link CifradorLlaves});
+ * sin esa llave no se pueden agregar ni generar llaves en tiempo de ejecución.
+ */
+@Component
+@Slf4j
+public class JwtKeyRing {
+
+    public static final String HS512 = "HS512";
+    public static final String ES256 = "ES256";
+    public static final String EDDSA = "EdDSA";
+
+    private static final int MIN_SECRETO_BYTES = 64;
+    private static final int MAX_SECRETO_BYTES = 512;
+    private static final int MAX_KID = 50;
+
+    @Value("${jwt.secret}")
+    private String secret;
+
+    @Value("${jwt.key-id:k1}")
+    private String keyId;
+
+    // Llaves anteriores que solo verifican, formato: kid:secreto,kid:secreto
+    @Value("${jwt.previous-keys:}")
+    private String previousKeys;
+
+    // Algoritmo de firma: HS512 (secreto compartido), ES256 o EdDSA (par de llaves)
+    @Value("${jwt.algorithm:HS512}")
+    private String algorithm;
+
+    // Par de llaves en Base64 (PKCS#8 / X.509) para los modos asimétricos
+    @Value("${jwt.private-key:}")
+    private String privateKey;
+
+    @Value("${jwt.public-key:}")
+    private String publicKey;
+
+    private final Environment environment;
+    private final LlaveJwtRepository llaveRepository;
+    private final CifradorLlaves cifrador;
+    private final AtomicReference<Snapshot> ring = new AtomicReference<>();
+    // Llaves de la configuración (y el par efímero del perfil dev); base de cada recarga
+    private Map<String, RingKey> configuradas;
+
+    // Llave de firma y de verificación de un kid; en HMAC ambas son el mismo secreto
+    private record RingKey(Key signingKey, Key verificationKey) {
+    }
+
+    /**
+     * Llave de firma activa junto con su kid, tomados del mismo snapshot: el header y la firma
+     * de un token siempre corresponden aunque una rotación se publique mientras se firma.
+     */
+    public record LlaveFirma(String kid, Key key) {
+    }
+
+    // Estado inmutable del anillo; cada cambio publica un snapshot nuevo junto con su JWKS
+    private record Snapshot(String activeKeyId, Map<String, RingKey> keys, Map<String, Object> jwks) {
+
+        LlaveFirma firma() {
+            return new LlaveFirma(activeKeyId, keys.get(activeKeyId).signingKey());
+        }
+    }
+
+    public JwtKeyRing(Environment environment, LlaveJwtRepository llaveRepository, CifradorLlaves cifrador) {
+        this.environment = environment;
+        this.llaveRepository = llaveRepository;
+        this.cifrador = cifrador;
+    }
+
+    @PostConstruct
+    void init() {
+        Map<String, RingKey> keys = new LinkedHashMap<>();
+        if (previousKeys != null && !previousKeys.isBlank()) {
+            for (String entry : previousKeys.split(",")) {
+                String[] parts = entry.trim().split(":", 2);
+                if (parts.length == 2) {
+                    keys.put(parts[0], hmacKey(parts[1]));
+                }
+            }
+        }
+        keys.put(keyId, isAsymmetric() ? toRingKey(loadOrGenerateKeyPair()) : hmacKey(secret));
+        configuradas = Collections.unmodifiableMap(keys);
+        ring.set(construir(llaveRepository.findAll()));
+        log.info("Anillo de llaves JWT inicializado. Algoritmo: {}, llave activa: {}, llaves vigentes: {}",
+                algorithm, getActiveKeyId(), getKeyIds());
+    }
+
+    // Releer llaves_jwt: lo agregado, activado o retirado en otro nodo se aplica aquí sin reiniciar
+    @Scheduled(fixedDelayString = "${jwt.keys.poll-ms:10000}", initialDelayString = "${jwt.keys.poll-ms:10000}")
+    public void recargar() {
+        try {
+            Snapshot anterior = ring.get();
+            Snapshot nuevo = construir(llaveRepository.findAll());
+            ring.set(nuevo);
+            if (!nuevo.activeKeyId().equals(anterior.activeKeyId()) || !nuevo.keys().keySet().equals(anterior.keys().keySet())) {
+                log.info("Anillo de llaves JWT actualizado. Llave activa: {}, llaves vigentes: {}",
+                        nuevo.activeKeyId(), nuevo.keys().keySet());
+            }
+        } catch (RuntimeException e) {
+            log.error("Error al recargar las llaves JWT, se conserva el anillo actual: {}", e.getMessage());
+        }
+    }
+
+    public boolean isAsymmetric() {
+        return !HS512.equals(algorithm);
+    }
+
+    public String getActiveKeyId() {
+        return ring.get().activeKeyId();
+    }
+
+    // Una sola lectura del anillo para el kid y la llave
+    public LlaveFirma getActiveSigningKey() {
+        return ring.get().firma();
+    }
+
+    // Buscar la llave de verificación; los tokens sin "kid" (emitidos antes del anillo) usan la llave configurada
+    public Key findKey(String kid) {
+        RingKey key = ring.get().keys().get(kid != null ? kid : keyId);
+        return key != null ? key.verificationKey() : null;
+    }
+
+    public Set<String> getKeyIds() {
+        return ring.get().keys().keySet();
+    }
+
+    // JWKS con las llaves públicas vigentes; vacío en modo HMAC
+    public Map<String, Object> getJwks() {
+        return ring.get().jwks();
+    }
+
+    // Agregar un secreto HMAC (al menos 512 bits para HS512); si activar es true pasa a ser la llave de firma
+    public void addKey(String kid, String keySecret, boolean activar) {
+        if (isAsymmetric()) {
+            throw new IllegalStateException("El anillo usa " + algorithm + "; genere un par de llaves en su lugar");
+        }
+        validarCifrado();
+        validarKidNuevo(kid);
+        int bytes = keySecret != null ? keySecret.getBytes(StandardCharsets.UTF_8).length : 0;
+        if (bytes < MIN_SECRETO_BYTES || bytes > MAX_SECRETO_BYTES) {
+            throw new IllegalArgumentException("El secreto debe tener entre " + MIN_SECRETO_BYTES + " y "
+                    + MAX_SECRETO_BYTES + " bytes");
+        }
+        guardar(LlaveJwt.builder()
+                .kid(kid)
+                .algoritmo(algorithm)
+                .secretoCifrado(cifrador.cifrar(kid, keySecret.getBytes(StandardCharsets.UTF_8)))
+                .build(), activar);
+    }
+
+    // Generar un par de llaves nuevo para el algoritmo configurado
+    public void generateKeyPair(String kid, boolean activar) {
+        if (!isAsymmetric()) {
+            throw new IllegalStateException("El anillo usa HS512; agregue un secreto en su lugar");
+        }
+        validarCifrado();
+        validarKidNuevo(kid);
+        KeyPair keyPair = newKeyPair();
+        guardar(LlaveJwt.builder()
+                .kid(kid)
+                .algoritmo(algorithm)
+                .llavePrivadaCifrada(cifrador.cifrar(kid, keyPair.getPrivate().getEncoded()))
+                .llavePublica(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()))
+                .build(), activar);
+    }
+
+    // Retirar una llave; los tokens firmados con ella dejan de validar en todos los nodos
+    public void retireKey(String kid) {
+        Snapshot current = ring.get();
+        if (kid == null || !current.keys().containsKey(kid)) {
+            throw new IllegalArgumentException("Llave no encontrada: " + kid);
+        }
+        if (kid.equals(current.activeKeyId())) {
+            throw new IllegalStateException("No se puede retirar la llave activa: " + kid);
+        }
+        // Sin material: la fila solo marca el kid como retirado, también si venía de la configuración
+        llaveRepository.save(LlaveJwt.builder().kid(kid).algoritmo(algorithm).retirada(true).build());
+        recargar();
+        log.info("Llave JWT retirada: {}", kid);
+    }
+
+    private void validarCifrado() {
+        if (!cifrador.isConfigurado()) {
+            throw new IllegalStateException("Configure jwt.keys.encryption-key para guardar llaves en tiempo de ejecución");
+        }
+    }
+
+    private void validarKidNuevo(String kid) {
+        if (kid == null || kid.isBlank() || kid.length() > MAX_KID) {
+            throw new IllegalArgumentException("El kid es obligatorio (máximo " + MAX_KID + " caracteres)");
+        }
+        if (ring.get().keys().containsKey(kid) || llaveRepository.existsById(kid)) {
+            throw new IllegalArgumentException("Ya existe una llave con kid: " + kid);
+        }
+    }
+
+    private void guardar(LlaveJwt llave, boolean activar) {
+        llaveRepository.save(llave);
+        if (activar) {
+            llaveRepository.activar(llave.getKid());
+        }
+        recargar();
+        log.info("Llave JWT agregada: {} (activa: {})", llave.getKid(), activar);
+    }
+
+    // Configuradas + llaves_jwt; la activa de la tabla manda sobre jwt.key-id
+    private Snapshot construir(List<LlaveJwt> llaves) {
+        Map<String, RingKey> keys = new LinkedHashMap<>(configuradas);
+        String activa = keyId;
+        for (LlaveJwt llave : llaves) {
+            if (Boolean.TRUE.equals(llave.getRetirada())) {
+                keys.remove(llave.getKid());
+                continue;
+            }
+            if (!algorithm.equals(llave.getAlgoritmo())) {
+                log.warn("Llave JWT {} ignorada: usa {} y el anillo usa {}", llave.getKid(), llave.getAlgoritmo(), algorithm);
+                continue;
+            }
+            try {
+                keys.put(llave.getKid(), cargar(llave));
+            } catch (RuntimeException e) {
+                // Sin la llave de cifrado correcta la fila no se puede usar; si era la activa, falla abajo
+                log.warn("Llave JWT {} ignorada: {}", llave.getKid(), e.getMessage());
+                continue;
+            }
+            if (Boolean.TRUE.equals(llave.getActiva())) {
+                activa = llave.getKid();
+            }
+        }
+        if (!keys.containsKey(activa)) {
+            throw new IllegalStateException("La llave activa " + activa + " no está en el anillo");
+        }
+        return snapshot(activa, keys);
+    }
+
+    private RingKey cargar(LlaveJwt llave) {
+        if (!isAsymmetric()) {
+            Key key = Keys.hmacShaKeyFor(cifrador.descifrar(llave.getKid(), llave.getSecretoCifrado()));
+            return new RingKey(key, key);
+        }
+        byte[] privada = cifrador.descifrar(llave.getKid(), llave.getLlavePrivadaCifrada());
+        return toRingKey(decodeKeyPair(Base64.getEncoder().encodeToString(privada), llave.getLlavePublica()));
+    }
+
+    private Snapshot snapshot(String activeKeyId, Map<String, RingKey> keys) {
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        keys.forEach((kid, key) -> {
+            if (key.verificationKey() instanceof PublicKey verificationKey) {
+                Jwk<?> jwk = Jwks.builder()
+                        .key(verificationKey)
+                        .id(kid)
+                        .algorithm(algorithm)
+                        .publicKeyUse("sig")
+                        .build();
+                jwks.add(Collections.unmodifiableMap(new LinkedHashMap<>(jwk)));
+            }
+        });
+        return new Snapshot(activeKeyId, Collections.unmodifiableMap(keys),
+                Map.of("keys", Collections.unmodifiableList(jwks)));
+    }
+
+    private RingKey hmacKey(String keySecret) {
+        Key key = Keys.hmacShaKeyFor(keySecret.getBytes(StandardCharsets.UTF_8));
+        return new RingKey(key, key);
+    }
+
+    private RingKey toRingKey(KeyPair keyPair) {
+        return new RingKey(keyPair.getPrivate(), keyPair.getPublic());
+    }
+
+    private KeyPair loadOrGenerateKeyPair() {
+        if (privateKey == null || privateKey.isBlank() || publicKey == null || publicKey.isBlank()) {
+            // Un par efímero distinto en cada nodo bajo el mismo kid rompe la verificación detrás del balanceador
+            if (!environment.acceptsProfiles(Profiles.of("dev"))) {
+                throw new IllegalStateException("Modo " + algorithm + " sin jwt.private-key/jwt.public-key; " +
+                        "configure el par de llaves (el par efímero solo se permite con el perfil dev)");
+            }
+            log.warn("jwt.private-key/jwt.public-key no configuradas; se genera un par de llaves efímero (perfil dev)");
+            return newKeyPair();
+        }
+        return decodeKeyPair(privateKey, publicKey);
+    }
+
+    private KeyPair decodeKeyPair(String privada, String publica) {
+        try {
+            KeyFactory factory = KeyFactory.getInstance(ES256.equals(algorithm) ? "EC" : "Ed25519");
+            return new KeyPair(
+                    factory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(publica.trim()))),
+                    factory.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privada.trim())))
+            );
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo cargar el par de llaves JWT: " + e.getMessage(), e);
+        }
+    }
+
+    private KeyPair newKeyPair() {
+        return switch (algorithm) {
+            case ES256 -> Jwts.SIG.ES256.keyPair().build();
+            case EDDSA -> Jwks.CRV.Ed25519.keyPair().build();
+            default -> throw new IllegalStateException("Algoritmo JWT no soportado: " + algorithm);
+        };
+    }
+}
@@ -1,9 +1,14 @@
 package com.cashi.auth.security;
 
+import com.cashi.auth.entity.Usuario;
 import com.cashi.auth.service.ConfiguracionSesionService;
+import com.cashi.auth.service.DiccionarioPermisosService;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.LocatorAdapter;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,11 +16,15 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -25,9 +34,12 @@ import java.util.stream.Collectors;
 public class JwtUtil {
 
     private final ConfiguracionSesionService configuracionService;
+    private final JwtKeyRing keyRing;
+    private final DiccionarioPermisosService diccionarioPermisosService;
 
-    @Value("${jwt.secret}")
-    private String secret;
+    // Codificar permisos como bitset (claims "pbits" + "pv") en lugar de la lista de códigos
+    @Value("${jwt.permisos-compactos:false}")
+    private boolean permisosCompactos;
 
     @Value("${jwt.expiration}")
     private Long defaultExpiration;
@@ -35,9 +47,19 @@ public class JwtUtil {
     @Value("${jwt.refresh-expiration}")
     private Long defaultRefreshExpiration;
 
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    // Parser construido una sola vez; resuelve la llave de verificación por el header "kid"
+    private JwtParser parser;
+
+    @PostConstruct
+    void initParser() {
+        parser = Jwts.parser()
+                .keyLocator(new LocatorAdapter<Key>() {
+                    @Override
+                    protected Key locate(JwsHeader header) {
+                        return keyRing.findKey(header.getKeyId());
+                    }
+                })
+                .build();
     }
 
     // Extraer el nombre de usuario del token
@@ -58,29 +80,73 @@ public class JwtUtil {
 
     // Extraer todos los claims
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
+        return parser
                 .parseSignedClaims(token)
                 .getPayload();
     }
 
-    // Verificar si el token ha expirado
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    // Verificar firma y decodificar claims en una sola pasada
+    public Optional<VerifiedToken> verifyToken(String token) {
+        try {
+            Claims claims = extractAllClaims(token);
+            VerifiedToken verified = new VerifiedToken(
+                    claims.getSubject(),
+                    claims.getExpiration(),
+                    toStringList(claims.get("roles")),
+                    extractPermisos(claims),
+                    claims.get("type", String.class),
+                    toLong(claims.get("uid")),
+                    toLong(claims.get("tenantId")),
+                    toLong(claims.get("portfolioId")),
+                    toLong(claims.get("subPortfolioId")),
+                    // Tokens emitidos antes de la época de revocación equivalen a la época 0
+                    Objects.requireNonNullElse(toLong(claims.get("ep")), 0L),
+                    claims.getId(),
+                    // Refresh tokens sin familia: emitidos antes de la rotación por familias
+                    toLong(claims.get("fam")),
+                    Objects.requireNonNullElse(toLong(claims.get("gen")), 0L)
+            );
+            if (verified.isExpired()) {
+                return Optional.empty();
+            }
+            return Optional.of(verified);
+        } catch (Exception e) {
+            log.error("Error validando token: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private List<String> extractPermisos(Claims claims) {
+        String pbits = claims.get("pbits", String.class);
+        if (pbits != null) {
+            // Un "pv" distinto del local (permiso agregado en otro nodo) relee el catálogo antes de decodificar
+            return diccionarioPermisosService.obtenerParaVersion(claims.get("pv", String.class)).decode(pbits);
+        }
+        return toStringList(claims.get("permisos"));
+    }
+
+    private List<String> toStringList(Object claim) {
+        if (!(claim instanceof Collection<?> values)) {
+            return List.of();
+        }
+        return values.stream()
+                .map(String::valueOf)
+                .toList();
+    }
+
+    private Long toLong(Object claim) {
+        return claim instanceof Number number ? number.longValue() : null;
     }
 
     // Generar Access Token
     public String generateAccessToken(UserDetails userDetails) {
-        Map<String, Object> claims = new HashMap<>();
+        return generateAccessToken(userDetails, tokenEpochDe(userDetails));
+    }
 
-        // DEBUG: Ver qué authorities tiene
-        System.out.println("=== DEBUG JwtUtil.generateAccessToken ===");
-        System.out.println("UserDetails username: " + userDetails.getUsername());
-        System.out.println("Authorities count: " + userDetails.getAuthorities().size());
-        userDetails.getAuthorities().forEach(auth ->
-            System.out.println("  - Authority: " + auth.getAuthority()));
-        System.out.println("=== FIN DEBUG ===");
+    // Generar Access Token con una época de revocación explícita (recién incrementada en el login)
+    public String generateAccessToken(UserDetails userDetails, long tokenEpoch) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("ep", tokenEpoch);
 
         // Agregar roles y permisos
         claims.put("roles", userDetails.getAuthorities().stream()
@@ -88,11 +154,28 @@ public class JwtUtil {
                 .map(auth -> auth.getAuthority().substring(5))  // Quitar prefijo "ROLE_"
                 .collect(Collectors.toList()));
 
-        claims.put("permisos", userDetails.getAuthorities().stream()
+        List<String> permisos = userDetails.getAuthorities().stream()
                 .filter(auth -> !auth.getAuthority().startsWith("ROLE_"))
                 .map(GrantedAuthority::getAuthority)
-                .collect(Collectors.toList()));
+                .collect(Collectors.toList());
 
+        if (permisosCompactos) {
+            DiccionarioPermisos diccionario = diccionarioPermisosService.obtenerDiccionario();
+            claims.put("pbits", diccionario.encode(permisos));
+            claims.put("pv", diccionario.getVersion());
+        } else {
+            claims.put("permisos", permisos);
+        }
+
+        // Identificador y alcance del usuario para autenticar solo con claims
+        if (userDetails instanceof Usuario usuario) {
+            claims.put("uid", usuario.getIdUsuario());
+            usuario.obtenerAsignacionPrincipal().ifPresent(asignacion -> {
+                claims.put("tenantId", asignacion.getTenantId());
+                claims.put("portfolioId", asignacion.getPortfolioId());
+                claims.put("subPortfolioId", asignacion.getSubPortfolioId());
+            });
+        }
 
         // Obtener tiempo de expiración de la configuración (en segundos) y convertir a milisegundos
         Long expirationMs = getAccessTokenExpiration() * 1000;
@@ -101,13 +184,37 @@ public class JwtUtil {
 
     // Generar Refresh Token
     public String generateRefreshToken(UserDetails userDetails) {
+        return generateRefreshToken(userDetails, tokenEpochDe(userDetails));
+    }
+
+    public String generateRefreshToken(UserDetails userDetails, long tokenEpoch) {
+        return generateRefreshToken(userDetails, tokenEpoch, null, 0L);
+    }
+
+    // Familia y generación del refresh token (ver FamiliaRefreshService)
+    public String generateRefreshToken(UserDetails userDetails, long tokenEpoch, Long familia, long generacion) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("type", "refresh");
+        claims.put("ep", tokenEpoch);
+        if (familia != null) {
+            claims.put("fam", familia);
+            claims.put("gen", generacion);
+        }
         // Obtener tiempo de expiración de la configuración (en segundos) y convertir a milisegundos
         Long refreshExpirationMs = getRefreshTokenExpiration() * 1000;
         return createToken(claims, userDetails.getUsername(), refreshExpirationMs);
     }
 
+    private long tokenEpochDe(UserDetails userDetails) {
+        if (userDetails instanceof Usuario usuario && usuario.getTokenEpoch() != null) {
+            return usuario.getTokenEpoch();
+        }
+        if (userDetails instanceof UsuarioSnapshot snapshot) {
+            return snapshot.tokenEpoch();
+        }
+        return 0L;
+    }
+
     // Obtener tiempo de expiración del access token desde configuración
     private Long getAccessTokenExpiration() {
         try {
@@ -130,35 +237,28 @@ public class JwtUtil {
 
     // Crear token
     private String createToken(Map<String, Object> claims, String subject, Long expirationTime) {
+        JwtKeyRing.LlaveFirma firma = keyRing.getActiveSigningKey();
         return Jwts.builder()
+                .header().keyId(firma.kid()).and()
                 .claims(claims)
                 .subject(subject)
+                .id(UUID.randomUUID().toString())
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expirationTime))
-                .signWith(getSigningKey())
+                .signWith(firma.key())
                 .compact();
     }
 
     // Validar token
     public Boolean validateToken(String token, UserDetails userDetails) {
-        try {
-            final String username = extractUsername(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
-        } catch (Exception e) {
-            log.error("Error validando token: {}", e.getMessage());
-            return false;
-        }
+        return verifyToken(token)
+                .map(verified -> verified.subject().equals(userDetails.getUsername()))
+                .orElse(false);
     }
 
     // Validar token sin UserDetails
     public Boolean validateToken(String token) {
-        try {
-            extractAllClaims(token);
-            return !isTokenExpired(token);
-        } catch (Exception e) {
-            log.error("Error validando token: {}", e.getMessage());
-            return false;
-        }
+        return verifyToken(token).isPresent();
     }
 
     // Obtener tiempo de expiración en milisegundos
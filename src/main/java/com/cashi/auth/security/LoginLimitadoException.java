@@ -0,0 +1,19 @@
+package com.cashi.auth.security;
+
+/**
+ * Demasiados intentos de login desde la misma IP o para el mismo usuario; se responde 429 con Retry-After
+ * sin llegar a verificar la contraseña.
+ */
+public class LoginLimitadoException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public LoginLimitadoException(long retryAfterSeconds) {
+        super("Demasiados intentos de login, reintente en " + retryAfterSeconds + " segundos");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,18 @@
+package com.cashi.auth.security;
+
+/**
+ * La cola de verificación de contraseñas está llena; el login debe responder 503 con Retry-After.
+ */
+public class LoginSaturadoException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public LoginSaturadoException(long retryAfterSeconds) {
+        super("Servicio de login saturado, reintente en " + retryAfterSeconds + " segundos");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,180 @@
+package com.cashi.auth.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limitador de intentos de login en memoria, por nombre de usuario y por IP de cliente.
+ * Cada clave tiene un token bucket (ráfaga + ritmo sostenido) que se consume antes de verificar la contraseña,
+ * y un contador de fallos en ventana deslizante. Un ataque de fuerza bruta cuesta una actualización del mapa,
+ * no un bcrypt más una escritura en usuarios: a la BD solo llega la transición a bloqueado_hasta.
+ * El límite por usuario es el que protege las cuentas. El límite por IP está desactivado por defecto: los agentes
+ * de un call center suelen salir por la misma IP (NAT) y el inicio de turno lo agotaría.
+ * Métrica: auth.login.limitados (intentos rechazados sin verificar la contraseña).
+ */
+@Component
+@Slf4j
+public class LoginThrottle {
+
+    private final Limite limiteUsuario;
+    private final Limite limiteIp;
+    private final long ventanaNanos;
+    private final Duration duracionBloqueo;
+    private final Cache<String, Estado> porUsuario;
+    private final Cache<String, Estado> porIp;
+    private final Counter limitadosCounter;
+
+    // Capacidad y recarga del bucket (capacidad 0 = sin bucket); maxFallos = fallos en la ventana que bloquean (0 = sin límite)
+    private record Limite(double capacidad, double recargaPorSegundo, int maxFallos) {
+
+        boolean activo() {
+            return capacidad > 0 || maxFallos > 0;
+        }
+    }
+
+    // Estado inmutable de una clave; se reemplaza atómicamente con compute() del mapa
+    private record Estado(double tokens, long recargaNanos, long ventana, int fallosActual, int fallosAnterior) {
+
+        Estado avanzar(long ahora, long ventanaActual, Limite limite) {
+            double recargados = (ahora - recargaNanos) / 1e9 * limite.recargaPorSegundo();
+            double nuevosTokens = Math.min(limite.capacidad(), tokens + recargados);
+            if (ventanaActual == ventana) {
+                return new Estado(nuevosTokens, ahora, ventana, fallosActual, fallosAnterior);
+            }
+            int anterior = ventanaActual == ventana + 1 ? fallosActual : 0;
+            return new Estado(nuevosTokens, ahora, ventanaActual, 0, anterior);
+        }
+
+        // Aproximación de ventana deslizante: la ventana anterior pondera según lo que aún se solapa
+        double fallos(long ahora, long ventanaNanos) {
+            double transcurrido = (double) Math.floorMod(ahora, ventanaNanos) / ventanaNanos;
+            return fallosActual + fallosAnterior * (1 - transcurrido);
+        }
+    }
+
+    public LoginThrottle(
+            MeterRegistry meterRegistry,
+            @Value("${auth.login.usuario.capacidad:10}") double capacidadUsuario,
+            @Value("${auth.login.usuario.recarga-por-segundo:0.2}") double recargaUsuario,
+            @Value("${auth.login.usuario.max-fallos:5}") int maxFallosUsuario,
+            @Value("${auth.login.ip.capacidad:0}") double capacidadIp,
+            @Value("${auth.login.ip.recarga-por-segundo:1}") double recargaIp,
+            @Value("${auth.login.ip.max-fallos:0}") int maxFallosIp,
+            @Value("${auth.login.ventana-minutos:15}") long ventanaMinutos,
+            @Value("${auth.login.bloqueo-minutos:30}") long bloqueoMinutos,
+            @Value("${auth.login.max-claves:100000}") long maxClaves
+    ) {
+        this.limiteUsuario = new Limite(capacidadUsuario, recargaUsuario, maxFallosUsuario);
+        this.limiteIp = new Limite(capacidadIp, recargaIp, maxFallosIp);
+        this.ventanaNanos = TimeUnit.MINUTES.toNanos(ventanaMinutos);
+        this.duracionBloqueo = Duration.ofMinutes(bloqueoMinutos);
+
+        // Una clave sin actividad durante dos ventanas ya no aporta fallos y su bucket está lleno
+        this.porUsuario = Caffeine.newBuilder()
+                .maximumSize(maxClaves)
+                .expireAfterAccess(Duration.ofNanos(ventanaNanos * 2))
+                .build();
+        this.porIp = Caffeine.newBuilder()
+                .maximumSize(maxClaves)
+                .expireAfterAccess(Duration.ofNanos(ventanaNanos * 2))
+                .build();
+        this.limitadosCounter = Counter.builder("auth.login.limitados")
+                .description("Intentos de login rechazados por el limitador antes de verificar la contraseña")
+                .register(meterRegistry);
+    }
+
+    // Consumir un intento del usuario y luego de la IP; lanza LoginLimitadoException si alguno está agotado.
+    // Un intento rechazado por el usuario no gasta el bucket de la IP
+    public void verificar(String nombreUsuario, String ip) {
+        long esperaSegundos = consumir(porUsuario, nombreUsuario, limiteUsuario, false);
+        if (esperaSegundos == 0) {
+            esperaSegundos = consumir(porIp, ip, limiteIp, true);
+        }
+        if (esperaSegundos > 0) {
+            limitadosCounter.increment();
+            log.warn("Login limitado para usuario: {} desde IP: {}", nombreUsuario, ip);
+            throw new LoginLimitadoException(esperaSegundos);
+        }
+    }
+
+    /**
+     * Registrar un login fallido. Devuelve la fecha de bloqueo solo cuando este fallo hace que el usuario
+     * alcance el máximo de la ventana; es la única transición que debe persistirse.
+     */
+    public Optional<LocalDateTime> registrarFallo(String nombreUsuario, String ip) {
+        sumarFallo(porIp, ip, limiteIp);
+        Estado estado = sumarFallo(porUsuario, nombreUsuario, limiteUsuario);
+        if (estado == null || limiteUsuario.maxFallos() <= 0
+                || estado.fallos(System.nanoTime(), ventanaNanos) < limiteUsuario.maxFallos()) {
+            return Optional.empty();
+        }
+        // El bloqueo queda en BD; el contador en memoria empieza de cero cuando expire
+        porUsuario.invalidate(nombreUsuario);
+        return Optional.of(LocalDateTime.now().plus(duracionBloqueo));
+    }
+
+    public int getMaxFallosUsuario() {
+        return limiteUsuario.maxFallos();
+    }
+
+    public void registrarExito(String nombreUsuario) {
+        if (nombreUsuario != null) {
+            porUsuario.invalidate(nombreUsuario);
+        }
+    }
+
+    // Segundos de espera si la clave está agotada, 0 si se consumió un token
+    private long consumir(Cache<String, Estado> cache, String clave, Limite limite, boolean limitarPorFallos) {
+        if (clave == null || !limite.activo()) {
+            return 0;
+        }
+        long[] espera = {0};
+        cache.asMap().compute(clave, (k, actual) -> {
+            long ahora = System.nanoTime();
+            Estado estado = avanzar(actual, ahora, limite);
+            if (limitarPorFallos && limite.maxFallos() > 0 && estado.fallos(ahora, ventanaNanos) >= limite.maxFallos()) {
+                espera[0] = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(ventanaNanos - Math.floorMod(ahora, ventanaNanos)));
+                return estado;
+            }
+            if (limite.capacidad() > 0 && estado.tokens() < 1) {
+                espera[0] = (long) Math.ceil((1 - estado.tokens()) / limite.recargaPorSegundo());
+                return estado;
+            }
+            if (limite.capacidad() <= 0) {
+                return estado;
+            }
+            return new Estado(estado.tokens() - 1, estado.recargaNanos(), estado.ventana(),
+                    estado.fallosActual(), estado.fallosAnterior());
+        });
+        return espera[0];
+    }
+
+    private Estado sumarFallo(Cache<String, Estado> cache, String clave, Limite limite) {
+        if (clave == null || !limite.activo()) {
+            return null;
+        }
+        return cache.asMap().compute(clave, (k, actual) -> {
+            Estado estado = avanzar(actual, System.nanoTime(), limite);
+            return new Estado(estado.tokens(), estado.recargaNanos(), estado.ventana(),
+                    estado.fallosActual() + 1, estado.fallosAnterior());
+        });
+    }
+
+    private Estado avanzar(Estado actual, long ahora, Limite limite) {
+        long ventanaActual = Math.floorDiv(ahora, ventanaNanos);
+        if (actual == null) {
+            return new Estado(limite.capacidad(), ahora, ventanaActual, 0, 0);
+        }
+        return actual.avanzar(ahora, ventanaActual, limite);
+    }
+}
@@ -0,0 +1,126 @@
+package com.cashi.auth.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecuta las verificaciones de contraseña (bcrypt) en un pool propio de tamaño fijo con cola acotada.
+ * Así una avalancha de logins no consume todos los hilos de Tomcat; cuando la cola está llena
+ * se lanza {@link LoginSaturadoException} de inmediato y /validate y /refresh-token mantienen su latencia.
+ * Métricas: auth.login.bcrypt.queue (profundidad), auth.login.bcrypt.wait (espera en cola),
+ * auth.login.bcrypt.rejected (rechazos).
+ */
+@Component
+@Slf4j
+public class PasswordVerificationExecutor {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long retryAfterSeconds;
+    private final Timer waitTimer;
+    private final Counter rejectedCounter;
+
+    public PasswordVerificationExecutor(
+            PasswordEncoder passwordEncoder,
+            MeterRegistry meterRegistry,
+            @Value("${auth.login.bcrypt.threads:0}") int threads,
+            @Value("${auth.login.bcrypt.queue-capacity:64}") int queueCapacity,
+            @Value("${auth.login.retry-after-seconds:2}") long retryAfterSeconds
+    ) {
+        this.passwordEncoder = passwordEncoder;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        // bcrypt es CPU-bound: por defecto un hilo por núcleo
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        Gauge.builder("auth.login.bcrypt.queue", executor, e -> e.getQueue().size())
+                .description("Verificaciones de contraseña esperando en cola")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("auth.login.bcrypt.wait")
+                .description("Tiempo de espera en cola antes de verificar la contraseña")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("auth.login.bcrypt.rejected")
+                .description("Logins rechazados por cola de verificación llena")
+                .register(meterRegistry);
+
+        log.info("Pool de verificación de contraseñas: {} hilos, cola de {}", poolSize, queueCapacity);
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        Future<Boolean> resultado;
+        try {
+            resultado = submit(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new LoginSaturadoException(retryAfterSeconds);
+        }
+        return await(resultado);
+    }
+
+    // Re-hash con el esquema actual si el hash guardado es de un esquema o costo anterior.
+    // Devuelve null si no hace falta o si el pool está saturado (se reintenta en el siguiente login)
+    public String upgradeIfNeeded(String rawPassword, String encodedPassword) {
+        if (!passwordEncoder.upgradeEncoding(encodedPassword)) {
+            return null;
+        }
+        try {
+            return await(submit(() -> passwordEncoder.encode(rawPassword)));
+        } catch (RejectedExecutionException e) {
+            log.debug("Re-hash de contraseña omitido: pool de verificación saturado");
+            return null;
+        }
+    }
+
+    private <T> Future<T> submit(Callable<T> tarea) {
+        long encolado = System.nanoTime();
+        return executor.submit(() -> {
+            waitTimer.record(System.nanoTime() - encolado, TimeUnit.NANOSECONDS);
+            return tarea.call();
+        });
+    }
+
+    private <T> T await(Future<T> resultado) {
+        try {
+            return resultado.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resultado.cancel(true);
+            throw new IllegalStateException("Verificación de contraseña interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error verificando contraseña", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,23 @@
+package com.cashi.auth.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rol compilado una sola vez y compartido por todos los usuarios que lo tienen:
+ * authority ROLE_, permisos (códigos y bits) y asignaciones de alcance.
+ */
+public record PerfilRol(
+        Long idRol,
+        String nombreRol,
+        Set<String> permisos,
+        PermisosCompilados permisosCompilados,
+        List<Asignacion> asignaciones,
+        List<GrantedAuthority> authorities
+) {
+
+    public record Asignacion(Long tenantId, Long portfolioId, Long subPortfolioId) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.cashi.auth.security;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * Autenticación que además lleva los permisos del usuario compilados a bits,
+ * calculados una sola vez por request en {@link JwtAuthenticationFilter}.
+ */
+public class PermisosAuthenticationToken extends UsernamePasswordAuthenticationToken {
+
+    private final transient PermisosCompilados permisos;
+
+    public PermisosAuthenticationToken(Object principal,
+                                       Collection<? extends GrantedAuthority> authorities,
+                                       PermisosCompilados permisos) {
+        super(principal, null, authorities);
+        this.permisos = permisos;
+    }
+
+    public PermisosCompilados getPermisos() {
+        return permisos;
+    }
+}
@@ -0,0 +1,40 @@
+package com.cashi.auth.security;
+
+import java.util.BitSet;
+
+/**
+ * Conjunto inmutable de permisos compilado a bits según el {@link DiccionarioPermisos}.
+ * Verificar un permiso es una sola prueba de bit.
+ */
+public final class PermisosCompilados {
+
+    public static final PermisosCompilados VACIO = new PermisosCompilados(new long[0]);
+
+    private final long[] words;
+
+    private PermisosCompilados(long[] words) {
+        this.words = words;
+    }
+
+    public static PermisosCompilados of(BitSet bits) {
+        return new PermisosCompilados(bits.toLongArray());
+    }
+
+    public PermisosCompilados union(PermisosCompilados otros) {
+        long[] mayor = words.length >= otros.words.length ? words : otros.words;
+        long[] menor = mayor == words ? otros.words : words;
+        long[] resultado = mayor.clone();
+        for (int i = 0; i < menor.length; i++) {
+            resultado[i] |= menor[i];
+        }
+        return new PermisosCompilados(resultado);
+    }
+
+    public boolean contiene(int bit) {
+        if (bit < 0) {
+            return false;
+        }
+        int word = bit >>> 6;
+        return word < words.length && (words[word] & (1L << bit)) != 0;
+    }
+}
@@ -0,0 +1,25 @@
+package com.cashi.auth.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Huella SHA-256 (32 bytes) de un JWT; es la clave con la que se guarda y busca en la tabla tokens
+ * en lugar del token completo.
+ */
+public final class TokenDigest {
+
+    public static final int LONGITUD = 32;
+
+    private TokenDigest() {
+    }
+
+    public static byte[] of(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.cashi.auth.security;
+
+import java.security.Principal;
+
+/**
+ * Principal liviano construido desde los claims de un access token verificado.
+ * Lleva el id del usuario y su alcance (tenant/cartera/subcartera) sin tocar la base de datos.
+ */
+public record UsuarioPrincipal(
+        Long idUsuario,
+        String nombreUsuario,
+        Long tenantId,
+        Long portfolioId,
+        Long subPortfolioId
+) implements Principal {
+
+    public static UsuarioPrincipal from(VerifiedToken token) {
+        return new UsuarioPrincipal(
+                token.idUsuario(),
+                token.subject(),
+                token.tenantId(),
+                token.portfolioId(),
+                token.subPortfolioId()
+        );
+    }
+
+    @Override
+    public String getName() {
+        return nombreUsuario;
+    }
+}
@@ -0,0 +1,113 @@
+package com.cashi.auth.security;
+
+import com.cashi.auth.dto.UsuarioCredencialesDTO;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Copia inmutable del estado de autorización de un usuario: credenciales y referencias a los
+ * {@link PerfilRol} compartidos. Es lo que se guarda en la caché de usuarios en lugar de las
+ * entidades administradas.
+ */
+public record UsuarioSnapshot(
+        Long idUsuario,
+        String nombreUsuario,
+        String contrasena,
+        boolean activo,
+        LocalDateTime bloqueadoHasta,
+        long tokenEpoch,
+        List<PerfilRol> perfiles,
+        List<GrantedAuthority> authorities,
+        PermisosCompilados permisosCompilados
+) implements UserDetails {
+
+    public static UsuarioSnapshot of(UsuarioCredencialesDTO credenciales, List<PerfilRol> perfiles) {
+        List<GrantedAuthority> authorities;
+        PermisosCompilados permisosCompilados;
+
+        // Con un solo rol (el caso habitual) se reutilizan directamente las estructuras del perfil
+        if (perfiles.size() == 1) {
+            authorities = perfiles.get(0).authorities();
+            permisosCompilados = perfiles.get(0).permisosCompilados();
+        } else {
+            Set<GrantedAuthority> union = new LinkedHashSet<>();
+            permisosCompilados = PermisosCompilados.VACIO;
+            for (PerfilRol perfil : perfiles) {
+                union.addAll(perfil.authorities());
+                permisosCompilados = permisosCompilados.union(perfil.permisosCompilados());
+            }
+            authorities = List.copyOf(union);
+        }
+
+        return new UsuarioSnapshot(
+                credenciales.getIdUsuario(),
+                credenciales.getNombreUsuario(),
+                credenciales.getContrasena(),
+                Boolean.TRUE.equals(credenciales.getActivo()),
+                credenciales.getBloqueadoHasta(),
+                credenciales.getTokenEpoch() != null ? credenciales.getTokenEpoch() : 0L,
+                List.copyOf(perfiles),
+                authorities,
+                permisosCompilados
+        );
+    }
+
+    public Set<Long> rolIds() {
+        return perfiles.stream().map(PerfilRol::idRol).collect(Collectors.toSet());
+    }
+
+    public Set<String> roles() {
+        return perfiles.stream().map(PerfilRol::nombreRol).collect(Collectors.toSet());
+    }
+
+    public Set<String> permisos() {
+        return perfiles.stream().flatMap(perfil -> perfil.permisos().stream()).collect(Collectors.toSet());
+    }
+
+    @Override
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return contrasena;
+    }
+
+    @Override
+    public String getUsername() {
+        return nombreUsuario;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return bloqueadoHasta == null || LocalDateTime.now().isAfter(bloqueadoHasta);
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return activo;
+    }
+
+    // No exponer el hash de la contraseña en logs
+    @Override
+    public String toString() {
+        return "UsuarioSnapshot[idUsuario=" + idUsuario + ", nombreUsuario=" + nombreUsuario + ", roles=" + roles() + "]";
+    }
+}
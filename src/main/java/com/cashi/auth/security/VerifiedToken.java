@@ -0,0 +1,33 @@
+package com.cashi.auth.security;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Resultado de verificar un JWT una sola vez: firma comprobada y claims ya decodificados.
+ * Evita volver a parsear el mismo token en cada paso del filtro o del servicio.
+ */
+public record VerifiedToken(
+        String subject,
+        Date expiration,
+        List<String> roles,
+        List<String> permisos,
+        String type,
+        Long idUsuario,
+        Long tenantId,
+        Long portfolioId,
+        Long subPortfolioId,
+        long tokenEpoch,
+        String jti,
+        Long familia,
+        long generacion
+) {
+
+    public boolean isExpired() {
+        return expiration != null && expiration.before(new Date());
+    }
+
+    public boolean isRefresh() {
+        return "refresh".equals(type);
+    }
+}
@@ -4,6 +4,7 @@ import com.cashi.auth.dto.request.LoginRequest;
 import com.cashi.auth.dto.request.RegistroRequest;
 import com.cashi.auth.dto.request.RefreshTokenRequest;
 import com.cashi.auth.dto.response.AuthResponse;
+import com.cashi.auth.dto.response.SesionesResponse;
 import com.cashi.auth.dto.response.UsuarioResponse;
 import com.cashi.auth.entity.Rol;
 import com.cashi.auth.entity.RolAsignacion;
@@ -13,20 +14,20 @@ import com.cashi.auth.repository.RolRepository;
 import com.cashi.auth.repository.TokenRepository;
 import com.cashi.auth.repository.UsuarioRepository;
 import com.cashi.auth.security.JwtUtil;
+import com.cashi.auth.security.LoginThrottle;
+import com.cashi.auth.security.PasswordVerificationExecutor;
+import com.cashi.auth.security.TokenDigest;
+import com.cashi.auth.security.UsuarioSnapshot;
+import com.cashi.auth.security.VerifiedToken;
+import com.cashi.auth.service.FamiliaRefreshService.EstadoRotacion;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.hibernate.Hibernate;
-import org.springframework.security.authentication.AuthenticationManager;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
-import jakarta.persistence.NoResultException;
-import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -43,11 +44,14 @@ public class AuthService {
     private final TokenRepository tokenRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
-    private final AuthenticationManager authenticationManager;
     private final TokenService tokenService;
-
-    @PersistenceContext
-    private EntityManager entityManager;
+    private final FamiliaRefreshService familiaRefreshService;
+    private final RevocacionFeedService revocacionFeedService;
+    private final UsuarioCacheService usuarioCacheService;
+    private final PasswordVerificationExecutor passwordVerifier;
+    private final LoginThrottle loginThrottle;
+    private final UltimoAccesoService ultimoAccesoService;
+    private final TransactionTemplate transactionTemplate;
 
     @Transactional
     public AuthResponse registrarUsuario(RegistroRequest request) {
@@ -93,147 +97,249 @@ public class AuthService {
         usuario = usuarioRepository.save(usuario);
         log.info("Usuario registrado exitosamente: {}", usuario.getNombreUsuario());
 
-        // Generar tokens
+        // Generar tokens; el refresh token inicia una familia nueva
+        Long idFamilia = familiaRefreshService.crear(usuario.getIdUsuario());
         String accessToken = jwtUtil.generateAccessToken(usuario);
-        String refreshToken = jwtUtil.generateRefreshToken(usuario);
+        String refreshToken = jwtUtil.generateRefreshToken(usuario, usuario.getTokenEpoch(), idFamilia, 0L);
 
         // Guardar tokens en BD
-        tokenService.guardarToken(accessToken, usuario, Token.TipoToken.ACCESS, null, null, null);
-        tokenService.guardarToken(refreshToken, usuario, Token.TipoToken.REFRESH, null, null, null);
+        tokenService.guardarToken(accessToken, usuario, Token.TipoToken.ACCESS, usuario.getTokenEpoch(), idFamilia, null, null, null);
+        tokenService.guardarToken(refreshToken, usuario, Token.TipoToken.REFRESH, usuario.getTokenEpoch(), idFamilia, null, null, null);
 
         return construirAuthResponse(usuario, accessToken, refreshToken);
     }
 
-    @Transactional
+    // Sin @Transactional: bcrypt corre fuera de la transacción para no retener una conexión mientras espera en cola
     public AuthResponse login(LoginRequest request) {
         log.info("Intento de login para usuario: {}", request.getNombreUsuario());
 
+        // 0. Limitar por usuario e IP antes de tocar la BD o bcrypt
+        loginThrottle.verificar(request.getNombreUsuario(), request.getIpCliente());
+
+        // 1. Credenciales y estado de la cuenta desde la caché de snapshots
+        UsuarioSnapshot credenciales;
         try {
-            // Buscar usuario CON ROLES usando query nativa
-            Usuario usuario;
-            try {
-                usuario = usuarioRepository.findByNombreUsuarioWithRoles(request.getNombreUsuario())
-                        .orElseThrow(() -> new BadCredentialsException("Credenciales inválidas"));
-
-                // Forzar inicialización de la colección
-                entityManager.refresh(usuario);
-                usuario.getRoles().size(); // Touch para inicializar
-            } catch (BadCredentialsException e) {
-                throw e;
-            }
-
-            // DEBUG: Verificar roles cargados
-            System.out.println("=== DEBUG ROLES AFTER REFRESH ===");
-            System.out.println("Usuario: " + usuario.getNombreUsuario());
-            System.out.println("Roles count: " + usuario.getRoles().size());
-            usuario.getRoles().forEach(rol -> System.out.println("  - Rol: " + rol.getNombreRol()));
-            System.out.println("=== FIN DEBUG ===");
-
-            // Verificar si está bloqueado
-            if (!usuario.isAccountNonLocked()) {
-                throw new RuntimeException("Cuenta bloqueada hasta: " + usuario.getBloqueadoHasta());
-            }
-
-            // Autenticar
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(
-                            request.getNombreUsuario(),
-                            request.getContrasena()
-                    )
-            );
-
-            // Login exitoso - resetear intentos fallidos
-            usuario.resetearIntentosFallidos();
-            usuario.actualizarUltimoAcceso();
-            usuario = usuarioRepository.save(usuario);
-
-            // IMPORTANTE: Limpiar contexto y recargar con roles
-            entityManager.clear();
-            usuario = usuarioRepository.findByNombreUsuarioWithRoles(request.getNombreUsuario())
-                    .orElseThrow(() -> new RuntimeException("Error recargando usuario"));
-
-            // Forzar inicialización de roles, permisos y asignaciones
-            Hibernate.initialize(usuario.getRoles());
-            usuario.getRoles().forEach(rol -> {
-                Hibernate.initialize(rol.getPermisos());
-                Hibernate.initialize(rol.getAsignaciones());
-            });
+            credenciales = usuarioCacheService.obtener(request.getNombreUsuario());
+        } catch (UsernameNotFoundException e) {
+            loginThrottle.registrarFallo(null, request.getIpCliente());
+            log.warn("Login fallido para usuario: {}", request.getNombreUsuario());
+            throw new RuntimeException("Credenciales inválidas");
+        }
 
-            // DEBUG: Verificar roles después de recarga
-            System.out.println("=== DEBUG DESPUÉS DE RECARGA ===");
-            System.out.println("Usuario: " + usuario.getNombreUsuario());
-            System.out.println("Roles count: " + usuario.getRoles().size());
-            usuario.getRoles().forEach(rol -> {
-                System.out.println("  - Rol: " + rol.getNombreRol());
-                System.out.println("    Asignaciones count: " + rol.getAsignaciones().size());
-                rol.getAsignaciones().forEach(asig -> {
-                    System.out.println("      - TenantId: " + asig.getTenantId() +
-                                       ", PortfolioId: " + asig.getPortfolioId() +
-                                       ", SubPortfolioId: " + asig.getSubPortfolioId());
-                });
-            });
-            System.out.println("Authorities count: " + usuario.getAuthorities().size());
-            usuario.getAuthorities().forEach(auth -> System.out.println("  - Authority: " + auth.getAuthority()));
-            System.out.println("=== FIN DEBUG ===");
-            
-            // Single session: revocar tokens anteriores antes de crear nuevos
-            // Si el usuario tenía sesión en otro navegador/dispositivo, esa sesión se invalida
-            tokenService.revocarTodosLosTokensDelUsuario(usuario.getIdUsuario());
-
-            // Generar tokens
-            String accessToken = jwtUtil.generateAccessToken(usuario);
-            String refreshToken = jwtUtil.generateRefreshToken(usuario);
-
-            // Guardar tokens en BD
-            tokenService.guardarToken(accessToken, usuario, Token.TipoToken.ACCESS,
-                    request.getIpCliente(), request.getUserAgent(), request.getDispositivo());
-            tokenService.guardarToken(refreshToken, usuario, Token.TipoToken.REFRESH,
-                    request.getIpCliente(), request.getUserAgent(), request.getDispositivo());
-
-            log.info("Login exitoso para usuario: {}", usuario.getNombreUsuario());
-
-            return construirAuthResponse(usuario, accessToken, refreshToken);
-
-        } catch (BadCredentialsException e) {
-            // Incrementar intentos fallidos
-            usuarioRepository.findByNombreUsuario(request.getNombreUsuario()).ifPresent(usuario -> {
-                usuario.incrementarIntentosFallidos();
-                usuarioRepository.save(usuario);
-            });
+        // 2. Verificar la contraseña una sola vez (pool bcrypt acotado)
+        String hashActualizado = verificarCredenciales(request, credenciales);
+
+        // 3. Una sola transacción de escritura: cargar usuario, actualizar, revocar y emitir tokens
+        UsuarioSnapshot verificadas = credenciales;
+        AuthResponse response = transactionTemplate.execute(status -> completarLogin(request, verificadas, hashActualizado));
+        if (response != null) {
+            return response;
+        }
+
+        // El usuario cambió en BD después del snapshot (p. ej. en otro nodo): repetir las verificaciones una vez
+        // contra el estado actual, que rechaza con el motivo correcto (inactivo, bloqueado o contraseña).
+        // El intento ya consumió el limitador; bcrypt solo se repite si el hash cambió
+        UsuarioSnapshot actuales;
+        try {
+            actuales = usuarioCacheService.recargar(request.getNombreUsuario());
+        } catch (UsernameNotFoundException e) {
+            throw new RuntimeException("Credenciales inválidas");
+        }
+        String hashReintento = hashActualizado;
+        if (actuales.getPassword().equals(credenciales.getPassword())) {
+            validarEstadoCuenta(actuales);
+        } else {
+            hashReintento = verificarCredenciales(request, actuales);
+        }
+
+        String hashFinal = hashReintento;
+        response = transactionTemplate.execute(status -> completarLogin(request, actuales, hashFinal));
+        if (response == null) {
+            throw new RuntimeException("Credenciales inválidas");
+        }
+        return response;
+    }
+
+    private void validarEstadoCuenta(UsuarioSnapshot credenciales) {
+        if (!credenciales.isAccountNonLocked()) {
+            throw new RuntimeException("Cuenta bloqueada hasta: " + credenciales.bloqueadoHasta());
+        }
+
+        if (!credenciales.isEnabled()) {
+            throw new RuntimeException("Usuario inactivo");
+        }
+    }
+
+    // Estado de la cuenta y contraseña contra el snapshot; devuelve el hash nuevo si hay que re-hashear, o null
+    private String verificarCredenciales(LoginRequest request, UsuarioSnapshot credenciales) {
+        validarEstadoCuenta(credenciales);
+
+        if (!passwordVerifier.matches(request.getContrasena(), credenciales.getPassword())) {
+            registrarIntentoFallido(credenciales, request.getIpCliente());
             log.warn("Login fallido para usuario: {}", request.getNombreUsuario());
             throw new RuntimeException("Credenciales inválidas");
         }
+        loginThrottle.registrarExito(credenciales.getUsername());
+
+        // Re-hash silencioso si la contraseña usa un esquema o costo anterior
+        return passwordVerifier.upgradeIfNeeded(request.getContrasena(), credenciales.getPassword());
     }
 
-    @Transactional
+    // El fallo se cuenta en memoria; solo el fallo que alcanza el máximo escribe bloqueado_hasta
+    private void registrarIntentoFallido(UsuarioSnapshot credenciales, String ip) {
+        loginThrottle.registrarFallo(credenciales.getUsername(), ip).ifPresent(bloqueadoHasta ->
+                transactionTemplate.executeWithoutResult(status -> {
+                    usuarioRepository.bloquearUsuario(credenciales.idUsuario(), bloqueadoHasta, loginThrottle.getMaxFallosUsuario());
+                    usuarioCacheService.invalidarUsuario(credenciales.getUsername());
+                    revocacionFeedService.registrarCambioUsuario(credenciales.idUsuario(), credenciales.getUsername());
+                    log.warn("Usuario bloqueado hasta {}: {}", bloqueadoHasta, credenciales.getUsername());
+                }));
+    }
+
+    // Devuelve null si la contraseña, activo o el bloqueo en BD ya no coinciden con el snapshot verificado
+    private AuthResponse completarLogin(LoginRequest request, UsuarioSnapshot credenciales, String hashActualizado) {
+        // Usuario + roles; permisos y asignaciones se cargan por lotes al generar el token
+        Usuario usuario = usuarioRepository.findByNombreUsuarioWithRoles(request.getNombreUsuario())
+                .orElseThrow(() -> new RuntimeException("Credenciales inválidas"));
+
+        // El snapshot puede venir de antes de un cambio hecho en otro nodo: la fila recién cargada manda
+        if (!usuario.getContrasena().equals(credenciales.getPassword())
+                || !Boolean.TRUE.equals(usuario.getActivo())
+                || (usuario.getBloqueadoHasta() != null && usuario.getBloqueadoHasta().isAfter(LocalDateTime.now()))) {
+            return null;
+        }
+
+        // Login exitoso - resetear intentos fallidos (solo genera UPDATE si había fallos o bloqueo)
+        boolean estabaBloqueado = usuario.getBloqueadoHasta() != null;
+        usuario.resetearIntentosFallidos();
+        // ultimo_acceso se escribe por lotes (write-behind); el usuario solo se actualiza si algo más cambió
+        ultimoAccesoService.registrarAccesoUsuario(usuario.getIdUsuario());
+        if (hashActualizado != null) {
+            usuario.setContrasena(hashActualizado);
+            log.info("Contraseña re-hasheada con el esquema actual para usuario: {}", usuario.getNombreUsuario());
+        }
+        if (estabaBloqueado || hashActualizado != null) {
+            usuarioCacheService.invalidarUsuario(usuario.getNombreUsuario());
+            revocacionFeedService.registrarCambioUsuario(usuario.getIdUsuario(), usuario.getNombreUsuario());
+        }
+
+        // Single session: revocar tokens anteriores antes de crear nuevos
+        // Si el usuario tenía sesión en otro navegador/dispositivo, esa sesión se invalida.
+        // Es un incremento de la época del usuario: costo constante sin importar el historial de tokens
+        long tokenEpoch = tokenService.revocarTodosLosTokensDelUsuario(usuario.getIdUsuario());
+
+        // Generar tokens con el usuario ya cargado y la época nueva; cada login inicia una familia de refresh
+        Long idFamilia = familiaRefreshService.crear(usuario.getIdUsuario());
+        String accessToken = jwtUtil.generateAccessToken(usuario, tokenEpoch);
+        String refreshToken = jwtUtil.generateRefreshToken(usuario, tokenEpoch, idFamilia, 0L);
+
+        // Guardar tokens en BD
+        tokenService.guardarToken(accessToken, usuario, Token.TipoToken.ACCESS, tokenEpoch, idFamilia,
+                request.getIpCliente(), request.getUserAgent(), request.getDispositivo());
+        tokenService.guardarToken(refreshToken, usuario, Token.TipoToken.REFRESH, tokenEpoch, idFamilia,
+                request.getIpCliente(), request.getUserAgent(), request.getDispositivo());
+
+        log.info("Login exitoso para usuario: {}", usuario.getNombreUsuario());
+
+        return construirAuthResponse(usuario, accessToken, refreshToken);
+    }
+
+    // Sin @Transactional: si el token fue reutilizado, la revocación de la familia se confirma aunque el refresh falle
     public AuthResponse refreshToken(RefreshTokenRequest request) {
         String refreshTokenStr = request.getRefreshToken();
 
-        // Validar refresh token
-        if (!jwtUtil.validateToken(refreshTokenStr)) {
-            throw new RuntimeException("Refresh token inválido o expirado");
+        // Validar refresh token (firma, expiración y época de revocación del usuario)
+        VerifiedToken verificado = jwtUtil.verifyToken(refreshTokenStr)
+                .filter(VerifiedToken::isRefresh)
+                .orElseThrow(() -> new RuntimeException("Refresh token inválido o expirado"));
+        if (!tokenService.esEpochVigente(verificado)) {
+            throw new RuntimeException("Refresh token inválido o revocado");
         }
 
-        // Verificar que el token esté en la BD y sea válido
-        Token refreshToken = tokenRepository.findByToken(refreshTokenStr)
-                .orElseThrow(() -> new RuntimeException("Refresh token no encontrado"));
+        if (verificado.familia() == null) {
+            return transactionTemplate.execute(status -> refrescarSinFamilia(verificado, refreshTokenStr));
+        }
 
-        if (!refreshToken.esValido()) {
+        Rotacion rotacion = transactionTemplate.execute(status -> rotarRefreshToken(verificado, refreshTokenStr));
+        if (rotacion.estado() == EstadoRotacion.REUTILIZADA) {
+            familiaRefreshService.revocar(verificado.familia());
+        }
+        if (rotacion.respuesta() == null) {
             throw new RuntimeException("Refresh token inválido o revocado");
         }
 
-        // Obtener usuario
-        Usuario usuario = refreshToken.getUsuario();
+        log.info("Refresh token rotado para usuario: {}", verificado.subject());
+        return rotacion.respuesta();
+    }
+
+    private record Rotacion(EstadoRotacion estado, AuthResponse respuesta) {
+    }
+
+    private Rotacion rotarRefreshToken(VerifiedToken verificado, String refreshTokenStr) {
+        // Cargar y firmar antes de rotar: el lock de la fila de la familia dura solo del UPDATE al commit
+        Usuario usuario = usuarioRepository.findByNombreUsuarioWithRoles(verificado.subject())
+                .orElseThrow(() -> new RuntimeException("Refresh token inválido o revocado"));
+        long generacion = verificado.generacion() + 1;
+        String nuevoAccessToken = jwtUtil.generateAccessToken(usuario, verificado.tokenEpoch());
+        String nuevoRefreshToken = jwtUtil.generateRefreshToken(usuario, verificado.tokenEpoch(), verificado.familia(), generacion);
+
+        EstadoRotacion estado = familiaRefreshService.rotar(verificado.familia(), verificado.generacion());
+        if (estado == EstadoRotacion.REVOCADA || estado == EstadoRotacion.REUTILIZADA) {
+            return new Rotacion(estado, null);
+        }
+
+        byte[] huella = TokenDigest.of(refreshTokenStr);
+        // Un refresh token entregado a una petición concurrente no tiene fila: se usa la última de la familia
+        Token anterior = tokenRepository.findByTokenHash(huella)
+                .or(() -> tokenRepository.findFirstByIdFamiliaAndTipoTokenOrderByIdTokenDesc(
+                        verificado.familia(), Token.TipoToken.REFRESH))
+                .orElse(null);
+        if (estado == EstadoRotacion.CONCURRENTE) {
+            // La rotación ganadora ya retiró el token presentado y guardó la fila de la generación nueva:
+            // otra fila de refresh mostraría la misma familia como dos sesiones. Solo se guarda el access token
+            guardarAccessToken(usuario, verificado.tokenEpoch(), verificado.familia(), anterior, nuevoAccessToken);
+        } else {
+            tokenService.retirarRefreshToken(huella, verificado);
+            guardarTokensRotados(usuario, verificado.tokenEpoch(), verificado.familia(), anterior, nuevoAccessToken, nuevoRefreshToken);
+        }
+        return new Rotacion(estado, construirAuthResponse(usuario, nuevoAccessToken, nuevoRefreshToken));
+    }
 
-        // Generar nuevo access token
-        String nuevoAccessToken = jwtUtil.generateAccessToken(usuario);
+    // Refresh token emitido antes de las familias: se valida contra la tabla tokens una vez y se migra a una familia
+    private AuthResponse refrescarSinFamilia(VerifiedToken verificado, String refreshTokenStr) {
+        byte[] huella = TokenDigest.of(refreshTokenStr);
+        Token anterior = tokenRepository.findByTokenHash(huella)
+                .orElseThrow(() -> new RuntimeException("Refresh token no encontrado"));
+        if (!anterior.esValido() || tokenService.retirarRefreshToken(huella, verificado) == 0) {
+            throw new RuntimeException("Refresh token inválido o revocado");
+        }
+
+        Usuario usuario = usuarioRepository.findByNombreUsuarioWithRoles(verificado.subject())
+                .orElseThrow(() -> new RuntimeException("Refresh token inválido o revocado"));
+        Long idFamilia = familiaRefreshService.crear(usuario.getIdUsuario());
+        String nuevoAccessToken = jwtUtil.generateAccessToken(usuario, verificado.tokenEpoch());
+        String nuevoRefreshToken = jwtUtil.generateRefreshToken(usuario, verificado.tokenEpoch(), idFamilia, 0L);
 
-        // Guardar nuevo access token
-        tokenService.guardarToken(nuevoAccessToken, usuario, Token.TipoToken.ACCESS, null, null, null);
+        guardarTokensRotados(usuario, verificado.tokenEpoch(), idFamilia, anterior, nuevoAccessToken, nuevoRefreshToken);
+        log.info("Refresh token migrado a la familia {} para usuario: {}", idFamilia, usuario.getNombreUsuario());
+        return construirAuthResponse(usuario, nuevoAccessToken, nuevoRefreshToken);
+    }
 
-        log.info("Access token renovado para usuario: {}", usuario.getNombreUsuario());
+    // Los tokens nuevos heredan el dispositivo del refresh token que reemplazan
+    private void guardarTokensRotados(Usuario usuario, long tokenEpoch, Long idFamilia, Token anterior,
+                                      String accessToken, String refreshToken) {
+        guardarAccessToken(usuario, tokenEpoch, idFamilia, anterior, accessToken);
+        tokenService.guardarToken(refreshToken, usuario, Token.TipoToken.REFRESH, tokenEpoch, idFamilia,
+                anterior != null ? anterior.getIpCliente() : null,
+                anterior != null ? anterior.getUserAgent() : null,
+                anterior != null ? anterior.getDispositivo() : null);
+    }
 
-        return construirAuthResponse(usuario, nuevoAccessToken, refreshTokenStr);
+    private void guardarAccessToken(Usuario usuario, long tokenEpoch, Long idFamilia, Token anterior, String accessToken) {
+        tokenService.guardarToken(accessToken, usuario, Token.TipoToken.ACCESS, tokenEpoch, idFamilia,
+                anterior != null ? anterior.getIpCliente() : null,
+                anterior != null ? anterior.getUserAgent() : null,
+                anterior != null ? anterior.getDispositivo() : null);
     }
 
     @Transactional
@@ -250,7 +356,9 @@ public class AuthService {
 
     @Transactional(readOnly = true)
     public boolean validarToken(String token) {
-        return jwtUtil.validateToken(token) && tokenService.esTokenValido(token);
+        return jwtUtil.verifyToken(token)
+                .map(verificado -> tokenService.esTokenValido(verificado, token))
+                .orElse(false);
     }
 
     @Transactional(readOnly = true)
@@ -261,23 +369,19 @@ public class AuthService {
         return convertirAUsuarioResponse(usuario);
     }
 
+    // El id sale de la caché de usuarios: no hace falta cargar la entidad para listar sesiones
+    public SesionesResponse obtenerSesionesActuales(String nombreUsuario, Long desde, Integer limite) {
+        Long idUsuario = usuarioCacheService.obtener(nombreUsuario).idUsuario();
+        return tokenService.obtenerSesionesActivasDelUsuario(idUsuario, desde, limite);
+    }
+
     // Métodos auxiliares
 
     private AuthResponse construirAuthResponse(Usuario usuario, String accessToken, String refreshToken) {
-        // DEBUG
-        System.out.println("=== DEBUG construirAuthResponse ===");
-        System.out.println("Usuario ID: " + usuario.getIdUsuario());
-        System.out.println("Usuario nombre: " + usuario.getNombreUsuario());
-        System.out.println("Roles size: " + usuario.getRoles().size());
-        usuario.getRoles().forEach(rol -> System.out.println("Rol encontrado: " + rol.getNombreRol()));
-        // FIN DEBUG
-
         Set<String> roles = usuario.getRoles().stream()
                 .map(Rol::getNombreRol)
                 .collect(Collectors.toSet());
 
-        System.out.println("=== FIN DEBUG ===");
-
         Set<String> permisos = usuario.getAuthorities().stream()
                 .map(GrantedAuthority::getAuthority)
                 .filter(auth -> !auth.startsWith("ROLE_"))
@@ -289,23 +393,11 @@ public class AuthService {
         Long portfolioId = null;
         Long subPortfolioId = null;
 
-        if (!usuario.getRoles().isEmpty()) {
-            Rol primerRol = usuario.getRoles().iterator().next();
-            if (!primerRol.getAsignaciones().isEmpty()) {
-                // Buscar primero una asignación con subPortfolioId no nulo
-                RolAsignacion asignacion = primerRol.getAsignaciones().stream()
-                        .filter(a -> a.getSubPortfolioId() != null)
-                        .findFirst()
-                        .orElse(primerRol.getAsignaciones().iterator().next());
-
-                tenantId = asignacion.getTenantId();
-                portfolioId = asignacion.getPortfolioId();
-                subPortfolioId = asignacion.getSubPortfolioId();
-
-                System.out.println("=== DEBUG ASIGNACIÓN SELECCIONADA ===");
-                System.out.println("TenantId: " + tenantId + ", PortfolioId: " + portfolioId + ", SubPortfolioId: " + subPortfolioId);
-                System.out.println("=== FIN DEBUG ===");
-            }
+        RolAsignacion asignacion = usuario.obtenerAsignacionPrincipal().orElse(null);
+        if (asignacion != null) {
+            tenantId = asignacion.getTenantId();
+            portfolioId = asignacion.getPortfolioId();
+            subPortfolioId = asignacion.getSubPortfolioId();
         }
 
         return AuthResponse.builder()
@@ -348,7 +440,7 @@ public class AuthService {
                 .activo(usuario.getActivo())
                 .verificadoEmail(usuario.getVerificadoEmail())
                 .fechaCreacion(usuario.getFechaCreacion())
-                .ultimoAcceso(usuario.getUltimoAcceso())
+                .ultimoAcceso(ultimoAccesoService.ultimoAccesoUsuario(usuario.getIdUsuario(), usuario.getUltimoAcceso()))
                 .roleNombres(roles)
                 .permisos(permisos)
                 .build();
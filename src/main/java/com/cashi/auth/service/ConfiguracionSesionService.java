@@ -5,11 +5,18 @@ import com.cashi.auth.entity.ConfiguracionSesion;
 import com.cashi.auth.repository.ConfiguracionSesionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @RequiredArgsConstructor
@@ -31,24 +38,66 @@ public class ConfiguracionSesionService {
     private static final int DEFAULT_ACCESS_TOKEN_EXPIRATION = 3600; // 1 hora
     private static final int DEFAULT_REFRESH_TOKEN_EXPIRATION = 604800; // 7 días
 
-    @Transactional(readOnly = true)
+    private static final List<String> CLAVES = List.of(
+            TIMEOUT_INACTIVIDAD, TIMEOUT_WARNING, ACCESS_TOKEN_EXPIRATION, REFRESH_TOKEN_EXPIRATION, AUTO_REFRESH_ENABLED);
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    /**
+     * Valores vigentes, inmutables: las claves de sesión (con sus valores por defecto) y cualquier otra clave activa.
+     * La versión solo aumenta cuando algún valor cambia, así quien derive algo de la configuración
+     * puede detectar que debe recalcularlo.
+     */
+    public record Snapshot(long version, Map<String, Integer> valores, Map<String, Integer> activos) {
+
+        public Integer valor(String clave) {
+            Integer valor = activos.get(clave);
+            return valor != null ? valor : obtenerValorPorDefecto(clave);
+        }
+    }
+
     public Integer obtenerValor(String clave) {
-        return configuracionRepository.findByClaveAndActivoTrue(clave)
-                .map(ConfiguracionSesion::getValor)
-                .orElseGet(() -> obtenerValorPorDefecto(clave));
+        return obtenerSnapshot().valor(clave);
     }
 
-    @Transactional(readOnly = true)
     public Map<String, Integer> obtenerTodasLasConfiguraciones() {
-        Map<String, Integer> configuraciones = new HashMap<>();
+        return obtenerSnapshot().valores();
+    }
+
+    public long getVersion() {
+        return obtenerSnapshot().version();
+    }
 
-        configuraciones.put(TIMEOUT_INACTIVIDAD, obtenerValor(TIMEOUT_INACTIVIDAD));
-        configuraciones.put(TIMEOUT_WARNING, obtenerValor(TIMEOUT_WARNING));
-        configuraciones.put(ACCESS_TOKEN_EXPIRATION, obtenerValor(ACCESS_TOKEN_EXPIRATION));
-        configuraciones.put(REFRESH_TOKEN_EXPIRATION, obtenerValor(REFRESH_TOKEN_EXPIRATION));
-        configuraciones.put(AUTO_REFRESH_ENABLED, obtenerValor(AUTO_REFRESH_ENABLED));
+    // Se carga en el primer uso; después se recarga al actualizar o por sondeo (cambios hechos desde otro nodo)
+    public Snapshot obtenerSnapshot() {
+        Snapshot actual = snapshot.get();
+        return actual != null ? actual : recargar();
+    }
+
+    // Lectura y publicación serializadas: un sondeo que leyó filas anteriores a una actualización no puede
+    // publicar después de la recarga posterior al commit (revertiría los valores y subiría la versión)
+    @Scheduled(fixedDelayString = "${auth.config.poll-ms:60000}", initialDelayString = "${auth.config.poll-ms:60000}")
+    public synchronized Snapshot recargar() {
+        Map<String, Integer> activos = new HashMap<>();
+        for (ConfiguracionSesion config : configuracionRepository.findByActivoTrue()) {
+            activos.put(config.getClave(), config.getValor());
+        }
+
+        Map<String, Integer> valores = new LinkedHashMap<>();
+        for (String clave : CLAVES) {
+            valores.put(clave, activos.getOrDefault(clave, obtenerValorPorDefecto(clave)));
+        }
 
-        return configuraciones;
+        Map<String, Integer> sesion = Collections.unmodifiableMap(valores);
+        Map<String, Integer> todos = Map.copyOf(activos);
+        Snapshot anterior = snapshot.get();
+        Snapshot nuevo = anterior;
+        if (anterior == null || !anterior.valores().equals(sesion) || !anterior.activos().equals(todos)) {
+            nuevo = new Snapshot(anterior != null ? anterior.version() + 1 : 1, sesion, todos);
+            snapshot.set(nuevo);
+        }
+        log.debug("Configuración de sesión cargada. Versión: {}", nuevo.version());
+        return nuevo;
     }
 
     @Transactional
@@ -61,6 +110,7 @@ public class ConfiguracionSesionService {
 
         config.setValor(valor);
         configuracionRepository.save(config);
+        recargarDespuesDelCommit();
 
         log.info("Configuración actualizada: {} = {}", clave, valor);
     }
@@ -82,9 +132,24 @@ public class ConfiguracionSesionService {
         crearSiNoExiste(AUTO_REFRESH_ENABLED, 1,
             "Habilitar renovación automática de token (1=sí, 0=no)");
 
+        recargarDespuesDelCommit();
         log.info("Configuraciones de sesión inicializadas");
     }
 
+    // Recargar al confirmar, para que el snapshot nunca publique valores de una transacción revertida
+    private void recargarDespuesDelCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recargar();
+                }
+            });
+        } else {
+            recargar();
+        }
+    }
+
     private void crearSiNoExiste(String clave, Integer valor, String descripcion) {
         if (!configuracionRepository.findByClave(clave).isPresent()) {
             ConfiguracionSesion config = ConfiguracionSesion.builder()
@@ -97,7 +162,7 @@ public class ConfiguracionSesionService {
         }
     }
 
-    private Integer obtenerValorPorDefecto(String clave) {
+    private static Integer obtenerValorPorDefecto(String clave) {
         switch (clave) {
             case TIMEOUT_INACTIVIDAD:
                 return DEFAULT_TIMEOUT_INACTIVIDAD;
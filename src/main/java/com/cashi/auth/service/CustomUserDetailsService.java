@@ -14,15 +14,14 @@ import org.springframework.stereotype.Service;
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UsuarioRepository usuarioRepository;
+    private final UsuarioCacheService usuarioCacheService;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         log.debug("Cargando usuario: {}", username);
 
-        // CAMBIADO: Usar query con JOIN FETCH para cargar roles
-        return usuarioRepository.findByNombreUsuarioWithRoles(username)
-                .orElseThrow(() -> new UsernameNotFoundException(
-                        "Usuario no encontrado: " + username));
+        // Snapshot inmutable desde la caché; solo consulta la BD en un fallo de caché
+        return usuarioCacheService.obtener(username);
     }
 
     public UserDetails loadUserByEmail(String email) throws UsernameNotFoundException {
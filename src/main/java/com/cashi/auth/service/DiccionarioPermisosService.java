@@ -0,0 +1,75 @@
+package com.cashi.auth.service;
+
+import com.cashi.auth.entity.Permiso;
+import com.cashi.auth.repository.PermisoRepository;
+import com.cashi.auth.security.DiccionarioPermisos;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DiccionarioPermisosService {
+
+    private static final int MAX_VERSIONES_ANTERIORES = 100;
+
+    private final PermisoRepository permisoRepository;
+
+    private final AtomicReference<DiccionarioPermisos> diccionario = new AtomicReference<>();
+    // Versiones que ya no son la del catálogo: sus tokens se decodifican sin volver a releerlo
+    private final Set<String> versionesAnteriores = ConcurrentHashMap.newKeySet();
+
+    // Se carga en el primer uso y se recarga cuando cambia el catálogo de permisos
+    public DiccionarioPermisos obtenerDiccionario() {
+        DiccionarioPermisos actual = diccionario.get();
+        return actual != null ? actual : recargar();
+    }
+
+    /**
+     * Diccionario para decodificar un token emitido con la versión indicada ("pv"). Una versión desconocida
+     * significa que el catálogo cambió en otro nodo: se relee una vez antes de decodificar. Si tras releer
+     * sigue sin coincidir, el token es de una versión anterior; como los bits no se reutilizan, se decodifica
+     * con el diccionario vigente y la versión se recuerda para no releer en cada request.
+     */
+    public DiccionarioPermisos obtenerParaVersion(String version) {
+        DiccionarioPermisos actual = obtenerDiccionario();
+        if (version == null || version.equals(actual.getVersion()) || versionesAnteriores.contains(version)) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = diccionario.get();
+            if (version.equals(actual.getVersion()) || versionesAnteriores.contains(version)) {
+                return actual;
+            }
+            log.info("Token con versión de permisos {} distinta de la local {}; recargando diccionario", version, actual.getVersion());
+            DiccionarioPermisos nuevo = recargar();
+            if (!version.equals(nuevo.getVersion())) {
+                if (versionesAnteriores.size() >= MAX_VERSIONES_ANTERIORES) {
+                    versionesAnteriores.clear();
+                }
+                versionesAnteriores.add(version);
+            }
+            return nuevo;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public DiccionarioPermisos recargar() {
+        Map<Integer, String> codigos = new HashMap<>();
+        for (Permiso permiso : permisoRepository.findAll()) {
+            codigos.put(permiso.getIdPermiso().intValue(), permiso.getCodigoPermiso());
+        }
+        DiccionarioPermisos nuevo = new DiccionarioPermisos(codigos);
+        diccionario.set(nuevo);
+        log.info("Diccionario de permisos cargado. Versión: {}, permisos: {}", nuevo.getVersion(), codigos.size());
+        return nuevo;
+    }
+}
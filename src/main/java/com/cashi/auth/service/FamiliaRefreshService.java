@@ -0,0 +1,125 @@
+package com.cashi.auth.service;
+
+import com.cashi.auth.entity.FamiliaRefresh;
+import com.cashi.auth.repository.FamiliaRefreshRepository;
+import com.cashi.auth.security.JwtUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Rotación de refresh tokens por familias. Cada refresh avanza la generación de la familia con un UPDATE
+ * condicional por clave primaria; presentar una generación anterior es reutilización y revoca la familia.
+ * Dos refresh concurrentes del mismo cliente con la misma generación no se bloquean entre sí más que el
+ * UPDATE de una fila: el que llega segundo, dentro de auth.tokens.refresh.gracia-ms, recibe tokens de la
+ * generación ya rotada en lugar de revocar la familia; solo la rotación ganadora guarda la fila del refresh token,
+ * así la familia sigue contando como una sola sesión.
+ * Métricas: auth.tokens.refresh.rotaciones, auth.tokens.refresh.concurrentes, auth.tokens.refresh.reutilizados.
+ */
+@Service
+@Slf4j
+public class FamiliaRefreshService {
+
+    public enum EstadoRotacion {
+        ROTADA,
+        CONCURRENTE,
+        REVOCADA,
+        REUTILIZADA
+    }
+
+    private final FamiliaRefreshRepository familiaRepository;
+    private final TokenService tokenService;
+    private final PurgaTokensService purgaTokensService;
+    private final JwtUtil jwtUtil;
+    private final long graciaMs;
+    private final Counter rotacionesCounter;
+    private final Counter concurrentesCounter;
+    private final Counter reutilizadosCounter;
+
+    public FamiliaRefreshService(
+            FamiliaRefreshRepository familiaRepository,
+            TokenService tokenService,
+            PurgaTokensService purgaTokensService,
+            JwtUtil jwtUtil,
+            MeterRegistry meterRegistry,
+            @Value("${auth.tokens.refresh.gracia-ms:10000}") long graciaMs
+    ) {
+        this.familiaRepository = familiaRepository;
+        this.tokenService = tokenService;
+        this.purgaTokensService = purgaTokensService;
+        this.jwtUtil = jwtUtil;
+        this.graciaMs = graciaMs;
+        this.rotacionesCounter = Counter.builder("auth.tokens.refresh.rotaciones")
+                .description("Refresh tokens rotados")
+                .register(meterRegistry);
+        this.concurrentesCounter = Counter.builder("auth.tokens.refresh.concurrentes")
+                .description("Refresh concurrentes de la misma generación atendidos dentro del periodo de gracia")
+                .register(meterRegistry);
+        this.reutilizadosCounter = Counter.builder("auth.tokens.refresh.reutilizados")
+                .description("Refresh tokens retirados presentados de nuevo; cada uno revoca su familia")
+                .register(meterRegistry);
+    }
+
+    // Nueva familia para un login; se confirma junto con los tokens que la usan
+    @Transactional
+    public Long crear(Long idUsuario) {
+        FamiliaRefresh familia = familiaRepository.save(FamiliaRefresh.builder()
+                .idUsuario(idUsuario)
+                .fechaExpiracion(expiracionRefresh())
+                .build());
+        return familia.getIdFamilia();
+    }
+
+    /**
+     * Avanza la familia desde la generación presentada. Si el UPDATE no aplica, la familia ya rotó o fue
+     * revocada: una rotación reciente a generacion + 1 es un refresh concurrente, cualquier otra cosa es reutilización.
+     * En ambos casos válidos la generación vigente queda en generacion + 1.
+     */
+    @Transactional
+    public EstadoRotacion rotar(Long idFamilia, long generacion) {
+        LocalDateTime ahora = LocalDateTime.now();
+        if (familiaRepository.rotar(idFamilia, generacion, ahora, expiracionRefresh()) == 1) {
+            rotacionesCounter.increment();
+            return EstadoRotacion.ROTADA;
+        }
+
+        FamiliaRefresh familia = familiaRepository.findActual(idFamilia).orElse(null);
+        if (familia == null || familia.getRevocada()) {
+            return EstadoRotacion.REVOCADA;
+        }
+        if (familia.getGeneracion() == generacion + 1 && familia.getFechaRotacion() != null
+                && familia.getFechaRotacion().isAfter(ahora.minusNanos(graciaMs * 1_000_000))) {
+            concurrentesCounter.increment();
+            return EstadoRotacion.CONCURRENTE;
+        }
+        return EstadoRotacion.REUTILIZADA;
+    }
+
+    // Se llama fuera de la transacción del refresh rechazado para que la revocación sí se confirme
+    @Transactional
+    public void revocar(Long idFamilia) {
+        if (familiaRepository.revocar(idFamilia) == 0) {
+            return;
+        }
+        reutilizadosCounter.increment();
+        int tokens = tokenService.revocarTokensDeFamilia(idFamilia);
+        log.warn("Refresh token reutilizado: familia {} revocada junto con {} tokens", idFamilia, tokens);
+    }
+
+    // Por lotes, con la misma purga que los tokens: un DELETE único bloquearía la tabla que usa cada refresh
+    @Scheduled(cron = "${token.cleanup.cron}")
+    public void purgarExpiradas() {
+        long eliminadas = purgaTokensService.purgarFamilias(LocalDateTime.now());
+        log.info("Familias de refresh expiradas eliminadas: {}", eliminadas);
+    }
+
+    private LocalDateTime expiracionRefresh() {
+        return LocalDateTime.now().plusSeconds(jwtUtil.getRefreshExpirationTime() / 1000);
+    }
+}
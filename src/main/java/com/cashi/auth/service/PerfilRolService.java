@@ -0,0 +1,101 @@
+package com.cashi.auth.service;
+
+import com.cashi.auth.entity.Rol;
+import com.cashi.auth.entity.RolAsignacion;
+import com.cashi.auth.repository.PermisoRepository;
+import com.cashi.auth.repository.RolAsignacionRepository;
+import com.cashi.auth.repository.RolRepository;
+import com.cashi.auth.security.DiccionarioPermisos;
+import com.cashi.auth.security.PerfilRol;
+import com.cashi.auth.security.PermisosCompilados;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro de perfiles de rol compilados. Cada rol se compila una vez y el mismo
+ * {@link PerfilRol} es referenciado por todos los usuarios que lo tienen.
+ * Se recompila en el siguiente acceso después de que RolManagementService lo modifica; los demás nodos
+ * lo descartan al leer la entrada ROL del registro de revocaciones (RevocacionFeedService).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PerfilRolService {
+
+    private final RolRepository rolRepository;
+    private final PermisoRepository permisoRepository;
+    private final RolAsignacionRepository rolAsignacionRepository;
+    private final DiccionarioPermisosService diccionarioPermisosService;
+
+    private final Map<Long, PerfilRol> perfiles = new ConcurrentHashMap<>();
+
+    public PerfilRol obtener(Long idRol) {
+        PerfilRol perfil = perfiles.get(idRol);
+        return perfil != null ? perfil : perfiles.computeIfAbsent(idRol, this::compilar);
+    }
+
+    public List<PerfilRol> obtenerTodos(List<Long> rolIds) {
+        List<PerfilRol> resultado = new ArrayList<>(rolIds.size());
+        for (Long idRol : rolIds) {
+            resultado.add(obtener(idRol));
+        }
+        return resultado;
+    }
+
+    // Descartar el perfil después del commit; se recompila en el siguiente acceso
+    public void invalidar(Long idRol) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    perfiles.remove(idRol);
+                }
+            });
+        } else {
+            perfiles.remove(idRol);
+        }
+    }
+
+    private PerfilRol compilar(Long idRol) {
+        Rol rol = rolRepository.findById(idRol)
+                .orElseThrow(() -> new RuntimeException("Rol no encontrado con ID: " + idRol));
+
+        Set<String> permisos = new LinkedHashSet<>();
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        authorities.add(new SimpleGrantedAuthority("ROLE_" + rol.getNombreRol()));
+        for (String codigo : permisoRepository.findCodigosByIdRol(idRol)) {
+            if (permisos.add(codigo)) {
+                authorities.add(new SimpleGrantedAuthority(codigo));
+            }
+        }
+
+        List<PerfilRol.Asignacion> asignaciones = new ArrayList<>();
+        for (RolAsignacion asignacion : rolAsignacionRepository.findByRolIdRol(idRol)) {
+            asignaciones.add(new PerfilRol.Asignacion(
+                    asignacion.getTenantId(), asignacion.getPortfolioId(), asignacion.getSubPortfolioId()));
+        }
+
+        DiccionarioPermisos diccionario = diccionarioPermisosService.obtenerDiccionario();
+        log.debug("Perfil compilado para rol {}: {} permisos", rol.getNombreRol(), permisos.size());
+        return new PerfilRol(
+                rol.getIdRol(),
+                rol.getNombreRol(),
+                Set.copyOf(permisos),
+                PermisosCompilados.of(diccionario.toBitSet(permisos)),
+                List.copyOf(asignaciones),
+                List.copyOf(authorities)
+        );
+    }
+}
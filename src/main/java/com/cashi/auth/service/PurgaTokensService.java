@@ -0,0 +1,181 @@
+package com.cashi.auth.service;
+
+import com.cashi.auth.repository.FamiliaRefreshRepository;
+import com.cashi.auth.repository.RevocacionTokenRepository;
+import com.cashi.auth.repository.TokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Purga de filas expiradas por lotes acotados, en orden (fecha, id) sobre el índice de fecha de cada tabla.
+ * Cada lote es su propia transacción corta y entre lotes hay una pausa, para no retener locks ni inflar el
+ * undo log de tablas que reciben inserts en cada login. La corrida se detiene al agotar su tiempo máximo o al
+ * apagar el servicio; como solo borra, la siguiente corrida continúa donde quedó esta.
+ * Métricas (con tag tabla): auth.tokens.purga.eliminados, auth.tokens.purga.pendientes, auth.tokens.purga.lote.
+ */
+@Service
+@Slf4j
+public class PurgaTokensService {
+
+    // Cursor inicial: antes de cualquier fecha de expiración posible
+    private static final LocalDateTime INICIO = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    // Siguiente lote de claves (fecha, id) posteriores al cursor; los repositorios lo implementan por keyset
+    @FunctionalInterface
+    interface BuscadorClaves {
+        List<Object[]> siguientes(LocalDateTime fechaLimite, LocalDateTime ultimaFecha, Long ultimoId, Pageable pagina);
+    }
+
+    // Métricas de la purga de una tabla
+    private static final class Tabla {
+        private final String nombre;
+        private final AtomicLong pendientes = new AtomicLong();
+        private final Counter eliminados;
+        private final Timer lote;
+
+        private Tabla(String nombre, MeterRegistry meterRegistry) {
+            this.nombre = nombre;
+            Gauge.builder("auth.tokens.purga.pendientes", pendientes, AtomicLong::get)
+                    .description("Filas expiradas que faltan por purgar en la corrida actual")
+                    .tag("tabla", nombre)
+                    .register(meterRegistry);
+            this.eliminados = Counter.builder("auth.tokens.purga.eliminados")
+                    .description("Filas expiradas eliminadas por la purga")
+                    .tag("tabla", nombre)
+                    .register(meterRegistry);
+            this.lote = Timer.builder("auth.tokens.purga.lote")
+                    .description("Duración de cada lote de la purga")
+                    .tag("tabla", nombre)
+                    .register(meterRegistry);
+        }
+    }
+
+    private final TokenRepository tokenRepository;
+    private final FamiliaRefreshRepository familiaRepository;
+    private final RevocacionTokenRepository revocacionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int lote;
+    private final long pausaMs;
+    private final Duration duracionMaxima;
+    private final Tabla tokens;
+    private final Tabla familias;
+    private final Tabla revocaciones;
+    private volatile boolean detener;
+
+    public PurgaTokensService(
+            TokenRepository tokenRepository,
+            FamiliaRefreshRepository familiaRepository,
+            RevocacionTokenRepository revocacionRepository,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${auth.tokens.purga.lote:1000}") int lote,
+            @Value("${auth.tokens.purga.pausa-ms:100}") long pausaMs,
+            @Value("${auth.tokens.purga.duracion-maxima-min:30}") long duracionMaximaMin
+    ) {
+        this.tokenRepository = tokenRepository;
+        this.familiaRepository = familiaRepository;
+        this.revocacionRepository = revocacionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.lote = lote;
+        this.pausaMs = pausaMs;
+        this.duracionMaxima = Duration.ofMinutes(duracionMaximaMin);
+        this.tokens = new Tabla("tokens", meterRegistry);
+        this.familias = new Tabla("familias_refresh", meterRegistry);
+        this.revocaciones = new Tabla("revocaciones_token", meterRegistry);
+    }
+
+    // Eliminar los tokens que expiraron antes de fechaLimite; devuelve el total de filas eliminadas
+    public long purgar(LocalDateTime fechaLimite) {
+        return purgarPorLotes(tokens, fechaLimite, tokenRepository.countByFechaExpiracionBefore(fechaLimite),
+                tokenRepository::findClavesParaPurga, tokenRepository::eliminarPorIds);
+    }
+
+    // Eliminar las familias de refresh que expiraron antes de fechaLimite
+    public long purgarFamilias(LocalDateTime fechaLimite) {
+        return purgarPorLotes(familias, fechaLimite, familiaRepository.countByFechaExpiracionBefore(fechaLimite),
+                familiaRepository::findClavesParaPurga, familiaRepository::eliminarPorIds);
+    }
+
+    // Eliminar las entradas del registro de revocaciones anteriores a fechaLimite
+    public long purgarRevocaciones(LocalDateTime fechaLimite) {
+        return purgarPorLotes(revocaciones, fechaLimite, revocacionRepository.countByFechaRegistroBefore(fechaLimite),
+                revocacionRepository::findClavesParaPurga, revocacionRepository::eliminarPorIds);
+    }
+
+    private long purgarPorLotes(Tabla tabla, LocalDateTime fechaLimite, long total,
+                                BuscadorClaves buscador, Function<List<Long>, Integer> eliminar) {
+        tabla.pendientes.set(total);
+        if (total == 0) {
+            return 0;
+        }
+        log.info("Purga de {} iniciada. {} filas expiraron antes de {}", tabla.nombre, total, fechaLimite);
+
+        long inicio = System.nanoTime();
+        LocalDateTime ultimaFecha = INICIO;
+        long ultimoId = 0;
+        long eliminados = 0;
+        boolean completa = false;
+
+        while (!detener && Duration.ofNanos(System.nanoTime() - inicio).compareTo(duracionMaxima) < 0) {
+            List<Object[]> claves = buscador.siguientes(fechaLimite, ultimaFecha, ultimoId, PageRequest.of(0, lote));
+            if (claves.isEmpty()) {
+                completa = true;
+                break;
+            }
+
+            List<Long> ids = claves.stream().map(clave -> (Long) clave[1]).toList();
+            Integer borrados = tabla.lote.record(() ->
+                    transactionTemplate.execute(status -> eliminar.apply(ids)));
+            int filas = borrados != null ? borrados : 0;
+
+            eliminados += filas;
+            tabla.eliminados.increment(filas);
+            tabla.pendientes.set(Math.max(0, total - eliminados));
+
+            Object[] ultima = claves.get(claves.size() - 1);
+            ultimaFecha = (LocalDateTime) ultima[0];
+            ultimoId = (Long) ultima[1];
+
+            if (claves.size() < lote) {
+                completa = true;
+                break;
+            }
+            pausar();
+        }
+
+        if (!completa) {
+            log.info("Purga de {} interrumpida con {} eliminados; la siguiente corrida continúa", tabla.nombre, eliminados);
+        }
+        tabla.pendientes.set(0);
+        return eliminados;
+    }
+
+    @PreDestroy
+    void alApagar() {
+        detener = true;
+    }
+
+    private void pausar() {
+        try {
+            Thread.sleep(pausaMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            detener = true;
+        }
+    }
+}
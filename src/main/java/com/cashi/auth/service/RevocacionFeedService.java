@@ -0,0 +1,249 @@
+package com.cashi.auth.service;
+
+import com.cashi.auth.dto.TokenRevocadoDTO;
+import com.cashi.auth.entity.RevocacionToken;
+import com.cashi.auth.repository.RevocacionTokenRepository;
+import com.cashi.auth.repository.TokenRepository;
+import com.cashi.auth.security.FiltroRevocacion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Propaga revocaciones entre nodos usando solo MySQL: cada revocación se agrega a revocaciones_token
+ * en la misma transacción, y cada nodo lee incrementalmente desde su marca de agua (el último id aplicado)
+ * para actualizar su filtro de revocación, su caché de usuarios y sus perfiles de rol compilados.
+ * Un id que aparece saltado (transacción aún sin confirmar) se vuelve a consultar durante un periodo de gracia.
+ * Métricas: auth.revocacion.poll (costo de cada sondeo), auth.revocacion.lag (registro → aplicación),
+ * auth.revocacion.aplicadas, auth.revocacion.marca-agua, auth.revocacion.huecos-descartados.
+ */
+@Service
+@DependsOn("tokenHashMigracion")
+@Slf4j
+public class RevocacionFeedService {
+
+    private static final int MAX_HUECOS = 1000;
+
+    private final RevocacionTokenRepository revocacionRepository;
+    private final TokenRepository tokenRepository;
+    private final FiltroRevocacion filtroRevocacion;
+    private final UsuarioCacheService usuarioCacheService;
+    private final PerfilRolService perfilRolService;
+    private final PurgaTokensService purgaTokensService;
+    private final ConfiguracionSesionService configuracionService;
+    private final int lote;
+    private final long graciaHuecosMs;
+    private final long retencionHoras;
+    private final AtomicLong marcaAgua = new AtomicLong();
+    // id saltado -> momento en que se detectó; solo lo usa el hilo de sondeo
+    private final Map<Long, Long> huecos = new HashMap<>();
+    private final Timer pollTimer;
+    private final Timer lagTimer;
+    private final Counter aplicadasCounter;
+    private final Counter huecosDescartadosCounter;
+
+    public RevocacionFeedService(
+            RevocacionTokenRepository revocacionRepository,
+            TokenRepository tokenRepository,
+            FiltroRevocacion filtroRevocacion,
+            UsuarioCacheService usuarioCacheService,
+            PerfilRolService perfilRolService,
+            PurgaTokensService purgaTokensService,
+            ConfiguracionSesionService configuracionService,
+            MeterRegistry meterRegistry,
+            @Value("${auth.revocacion.lote:500}") int lote,
+            @Value("${auth.revocacion.gracia-huecos-ms:60000}") long graciaHuecosMs,
+            @Value("${auth.revocacion.retencion-horas:24}") long retencionHoras
+    ) {
+        this.revocacionRepository = revocacionRepository;
+        this.tokenRepository = tokenRepository;
+        this.filtroRevocacion = filtroRevocacion;
+        this.usuarioCacheService = usuarioCacheService;
+        this.perfilRolService = perfilRolService;
+        this.purgaTokensService = purgaTokensService;
+        this.configuracionService = configuracionService;
+        this.lote = lote;
+        this.graciaHuecosMs = graciaHuecosMs;
+        this.retencionHoras = retencionHoras;
+        this.pollTimer = Timer.builder("auth.revocacion.poll")
+                .description("Duración de cada sondeo del registro de revocaciones")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("auth.revocacion.lag")
+                .description("Tiempo entre el registro de una revocación y su aplicación en este nodo")
+                .register(meterRegistry);
+        this.aplicadasCounter = Counter.builder("auth.revocacion.aplicadas")
+                .description("Revocaciones aplicadas desde el registro")
+                .register(meterRegistry);
+        this.huecosDescartadosCounter = Counter.builder("auth.revocacion.huecos-descartados")
+                .description("Ids saltados que no se siguieron por exceder el máximo de huecos")
+                .register(meterRegistry);
+        Gauge.builder("auth.revocacion.marca-agua", marcaAgua, AtomicLong::get)
+                .description("Último id de revocación aplicado por este nodo")
+                .register(meterRegistry);
+    }
+
+    // Fijar la marca de agua antes de cargar el estado: lo registrado en medio se vuelve a aplicar (es idempotente).
+    // Corre después de TokenHashMigracion: un token revocado sin token_hash quedaría fuera del filtro.
+    // Se cargan los tokens revocados de la tabla tokens y las entradas TOKEN del registro: con
+    // auth.tokens.persistir-access=false un access token revocado solo existe en el registro
+    @PostConstruct
+    void iniciar() {
+        marcaAgua.set(revocacionRepository.findMaxIdRevocacion());
+
+        LocalDateTime ahora = LocalDateTime.now();
+        List<TokenRevocadoDTO> revocados = tokenRepository.findTokensRevocadosVigentes(ahora);
+        List<TokenRevocadoDTO> registrados = revocacionRepository.findTokensRevocadosVigentes(ahora);
+        revocados.forEach(token -> filtroRevocacion.revocar(token.getTokenHash(), aMillis(token.getFechaExpiracion())));
+        registrados.forEach(token -> filtroRevocacion.revocar(token.getTokenHash(), aMillis(token.getFechaExpiracion())));
+        log.info("Filtro de revocación cargado con {} tokens y {} entradas del registro. Marca de agua: {}",
+                revocados.size(), registrados.size(), marcaAgua.get());
+
+        long accessSegundos = duracionAccessSegundos();
+        if (Duration.ofHours(retencionHoras).getSeconds() < accessSegundos) {
+            log.warn("auth.revocacion.retencion-horas={} es menor que la duración del access token ({} s): " +
+                    "la purga del registro retendrá al menos la duración del access token", retencionHoras, accessSegundos);
+        }
+    }
+
+    // Se escriben en la transacción de la revocación: el registro y el cambio se confirman juntos
+    public void registrarToken(byte[] tokenHash, LocalDateTime fechaExpiracion) {
+        revocacionRepository.save(RevocacionToken.builder()
+                .tipo(RevocacionToken.TipoRevocacion.TOKEN)
+                .tokenHash(tokenHash)
+                .fechaExpiracion(fechaExpiracion)
+                .build());
+    }
+
+    public void registrarUsuario(Long idUsuario, String nombreUsuario, long tokenEpoch) {
+        revocacionRepository.save(RevocacionToken.builder()
+                .tipo(RevocacionToken.TipoRevocacion.USUARIO)
+                .idUsuario(idUsuario)
+                .nombreUsuario(nombreUsuario)
+                .tokenEpoch(tokenEpoch)
+                .build());
+    }
+
+    // Cambio de credenciales, estado o bloqueo sin nueva época: los demás nodos solo descartan su snapshot
+    public void registrarCambioUsuario(Long idUsuario, String nombreUsuario) {
+        revocacionRepository.save(RevocacionToken.builder()
+                .tipo(RevocacionToken.TipoRevocacion.USUARIO)
+                .idUsuario(idUsuario)
+                .nombreUsuario(nombreUsuario)
+                .build());
+    }
+
+    public void registrarCambioRol(Long idRol) {
+        revocacionRepository.save(RevocacionToken.builder()
+                .tipo(RevocacionToken.TipoRevocacion.ROL)
+                .idRol(idRol)
+                .build());
+    }
+
+    @Scheduled(fixedDelayString = "${auth.revocacion.poll-ms:2000}")
+    public synchronized void sondear() {
+        pollTimer.record(() -> {
+            try {
+                leerSiguientes();
+                revisarHuecos();
+            } catch (RuntimeException e) {
+                log.error("Error al sondear el registro de revocaciones: {}", e.getMessage());
+            }
+        });
+    }
+
+    // Purga del registro por lotes. La retención nunca es menor que la duración del access token: un nodo que
+    // arranca recarga del registro los access tokens revocados que no están en la tabla tokens
+    @Scheduled(cron = "${token.cleanup.cron}")
+    public void purgarRegistro() {
+        long retencionSegundos = Math.max(Duration.ofHours(retencionHoras).getSeconds(), duracionAccessSegundos());
+        long eliminadas = purgaTokensService.purgarRevocaciones(LocalDateTime.now().minusSeconds(retencionSegundos));
+        log.info("Registro de revocaciones purgado. {} entradas eliminadas", eliminadas);
+    }
+
+    private void leerSiguientes() {
+        long desde = marcaAgua.get();
+        List<RevocacionToken> siguientes;
+        do {
+            siguientes = revocacionRepository.findSiguientes(desde, PageRequest.of(0, lote));
+            for (RevocacionToken revocacion : siguientes) {
+                long id = revocacion.getIdRevocacion();
+                if (id > desde + 1) {
+                    registrarHuecos(desde, id);
+                }
+                aplicar(revocacion);
+                desde = id;
+            }
+            marcaAgua.set(desde);
+        } while (siguientes.size() == lote);
+    }
+
+    // Los ids que no caben en el seguimiento no se vuelven a consultar: se cuentan para que la pérdida sea visible
+    private void registrarHuecos(long desde, long hasta) {
+        long detectado = System.currentTimeMillis();
+        long hueco = desde + 1;
+        for (; hueco < hasta && huecos.size() < MAX_HUECOS; hueco++) {
+            huecos.put(hueco, detectado);
+        }
+        long descartados = hasta - hueco;
+        if (descartados > 0) {
+            huecosDescartadosCounter.increment(descartados);
+            log.warn("Seguimiento de huecos lleno ({}): {} ids saltados entre {} y {} no se volverán a consultar",
+                    MAX_HUECOS, descartados, hueco, hasta - 1);
+        }
+    }
+
+    // Ids saltados: transacciones que confirmaron después de otra posterior, o ids perdidos por un rollback
+    private void revisarHuecos() {
+        if (huecos.isEmpty()) {
+            return;
+        }
+        for (RevocacionToken revocacion : revocacionRepository.findAllById(huecos.keySet())) {
+            aplicar(revocacion);
+            huecos.remove(revocacion.getIdRevocacion());
+        }
+        long limite = System.currentTimeMillis() - graciaHuecosMs;
+        huecos.values().removeIf(detectado -> detectado < limite);
+    }
+
+    private void aplicar(RevocacionToken revocacion) {
+        switch (revocacion.getTipo()) {
+            case TOKEN -> {
+                if (revocacion.getTokenHash() != null && revocacion.getFechaExpiracion() != null) {
+                    filtroRevocacion.revocar(revocacion.getTokenHash(), aMillis(revocacion.getFechaExpiracion()));
+                }
+            }
+            // La siguiente validación recarga el usuario y ve la época nueva
+            case USUARIO -> usuarioCacheService.invalidarUsuario(revocacion.getNombreUsuario());
+            case ROL -> {
+                perfilRolService.invalidar(revocacion.getIdRol());
+                usuarioCacheService.invalidarPorRol(revocacion.getIdRol());
+            }
+        }
+        aplicadasCounter.increment();
+        lagTimer.record(Duration.between(revocacion.getFechaRegistro(), LocalDateTime.now()));
+    }
+
+    private long duracionAccessSegundos() {
+        return configuracionService.obtenerValor(ConfiguracionSesionService.ACCESS_TOKEN_EXPIRATION).longValue();
+    }
+
+    private long aMillis(LocalDateTime fecha) {
+        return fecha.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
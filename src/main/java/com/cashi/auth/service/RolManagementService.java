@@ -26,6 +26,9 @@ public class RolManagementService {
     private final RolRepository rolRepository;
     private final PermisoRepository permisoRepository;
     private final RolAsignacionRepository rolAsignacionRepository;
+    private final UsuarioCacheService usuarioCacheService;
+    private final PerfilRolService perfilRolService;
+    private final RevocacionFeedService revocacionFeedService;
 
     @Transactional(readOnly = true)
     public List<RolResponse> obtenerTodosRoles() {
@@ -124,6 +127,10 @@ public class RolManagementService {
             }
         }
 
+        perfilRolService.invalidar(id);
+        usuarioCacheService.invalidarPorRol(id);
+        revocacionFeedService.registrarCambioRol(id);
+
         return obtenerRolPorId(id);
     }
 
@@ -133,6 +140,9 @@ public class RolManagementService {
             throw new RuntimeException("Rol no encontrado con ID: " + id);
         }
         rolRepository.deleteById(id);
+        perfilRolService.invalidar(id);
+        usuarioCacheService.invalidarPorRol(id);
+        revocacionFeedService.registrarCambioRol(id);
     }
 
     private RolResponse convertirAResponse(Rol rol) {
@@ -1,16 +1,29 @@
 package com.cashi.auth.service;
 
+import com.cashi.auth.config.TokenHashMigracion;
+import com.cashi.auth.dto.SesionActivaDTO;
+import com.cashi.auth.dto.TokenRevocadoDTO;
+import com.cashi.auth.dto.response.SesionesResponse;
 import com.cashi.auth.entity.Token;
 import com.cashi.auth.entity.Usuario;
 import com.cashi.auth.repository.TokenRepository;
+import com.cashi.auth.repository.UsuarioRepository;
+import com.cashi.auth.security.FiltroRevocacion;
 import com.cashi.auth.security.JwtUtil;
+import com.cashi.auth.security.TokenDigest;
+import com.cashi.auth.security.UsuarioSnapshot;
+import com.cashi.auth.security.VerifiedToken;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 
 @Service
@@ -19,16 +32,38 @@ import java.util.List;
 public class TokenService {
 
     private final TokenRepository tokenRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final UsuarioCacheService usuarioCacheService;
     private final JwtUtil jwtUtil;
+    private final FiltroRevocacion filtroRevocacion;
+    private final RevocacionFeedService revocacionFeedService;
+    private final PurgaTokensService purgaTokensService;
+    private final TokenHashMigracion tokenHashMigracion;
 
+    @Value("${auth.sesiones.pagina-maxima:100}")
+    private int paginaMaxima;
+
+    @Value("${auth.tokens.purga.dias-retencion:30}")
+    private long diasRetencion;
+
+    // false = solo se guardan los refresh tokens; los access tokens son stateless y se revocan en memoria
+    @Value("${auth.tokens.persistir-access:true}")
+    private boolean persistirAccess;
+
+    // Devuelve null si el token no se persiste (access token en modo solo-refresh)
     @Transactional
-    public Token guardarToken(String tokenStr, Usuario usuario, Token.TipoToken tipoToken, String ipCliente, String userAgent, String dispositivo) {
+    public Token guardarToken(String tokenStr, Usuario usuario, Token.TipoToken tipoToken, long tokenEpoch,
+                              Long idFamilia, String ipCliente, String userAgent, String dispositivo) {
+        if (tipoToken == Token.TipoToken.ACCESS && !persistirAccess) {
+            return null;
+        }
+
         LocalDateTime expiracion = tipoToken == Token.TipoToken.ACCESS
                 ? LocalDateTime.now().plusSeconds(jwtUtil.getExpirationTime() / 1000)
                 : LocalDateTime.now().plusSeconds(jwtUtil.getRefreshExpirationTime() / 1000);
 
         Token token = Token.builder()
-                .token(tokenStr)
+                .tokenHash(TokenDigest.of(tokenStr))
                 .tipoToken(tipoToken)
                 .usuario(usuario)
                 .fechaExpiracion(expiracion)
@@ -37,47 +72,132 @@ public class TokenService {
                 .dispositivo(dispositivo)
                 .activo(true)
                 .revocado(false)
+                .tokenEpoch(tokenEpoch)
+                .idFamilia(idFamilia)
                 .build();
 
-        return tokenRepository.save(token);
+        Token guardado = tokenRepository.save(token);
+        // Durante el despliegue gradual los nodos de la versión anterior buscan por tokens.token
+        tokenHashMigracion.escribirTokenLegado(guardado.getIdToken(), tokenStr);
+        return guardado;
     }
 
-    @Transactional(readOnly = true)
-    public boolean esTokenValido(String tokenStr) {
-        return tokenRepository.findByToken(tokenStr)
-                .map(Token::esValido)
-                .orElse(false);
+    /**
+     * Firma y expiración ya verificadas: un token es válido si no es un refresh token, su época sigue vigente
+     * y no está en el filtro de revocación. Ninguna de las consultas toca la BD en el caso habitual.
+     * Los refresh tokens solo sirven en /refresh-token, donde se validan contra su familia.
+     */
+    public boolean esTokenValido(VerifiedToken verificado, String tokenStr) {
+        return !verificado.isRefresh()
+                && esEpochVigente(verificado)
+                && !filtroRevocacion.estaRevocado(TokenDigest.of(tokenStr));
+    }
+
+    /**
+     * La época del token debe coincidir con la del usuario en caché. Una época menor significa que se
+     * revocaron todas sus sesiones; una mayor, que la caché local aún no vio el incremento y debe recargarse.
+     */
+    public boolean esEpochVigente(VerifiedToken verificado) {
+        try {
+            UsuarioSnapshot usuario = usuarioCacheService.obtener(verificado.subject());
+            if (verificado.tokenEpoch() > usuario.tokenEpoch()) {
+                usuario = usuarioCacheService.recargar(verificado.subject());
+            }
+            return verificado.tokenEpoch() == usuario.tokenEpoch();
+        } catch (UsernameNotFoundException e) {
+            return false;
+        }
     }
 
     @Transactional
     public void revocarToken(String tokenStr) {
-        tokenRepository.findByToken(tokenStr).ifPresent(token -> {
+        byte[] huella = TokenDigest.of(tokenStr);
+        // Local de inmediato; los demás nodos lo aplican desde el registro de revocaciones
+        jwtUtil.verifyToken(tokenStr).ifPresent(verificado -> {
+            filtroRevocacion.revocar(huella, verificado.expiration().getTime());
+            revocacionFeedService.registrarToken(huella,
+                    LocalDateTime.ofInstant(verificado.expiration().toInstant(), ZoneId.systemDefault()));
+        });
+        tokenRepository.findByTokenHash(huella).ifPresent(token -> {
             token.revocar();
             tokenRepository.save(token);
             log.info("Token revocado: {}", tokenStr.substring(0, 20) + "...");
         });
     }
 
+    // Refresh token reemplazado por rotación: se retira la fila y entra al filtro de revocación en todos los nodos.
+    // Devuelve 0 si otra petición ya lo había retirado
+    @Transactional
+    public int retirarRefreshToken(byte[] huella, VerifiedToken verificado) {
+        LocalDateTime expiracion = LocalDateTime.ofInstant(verificado.expiration().toInstant(), ZoneId.systemDefault());
+        filtroRevocacion.revocar(huella, verificado.expiration().getTime());
+        revocacionFeedService.registrarToken(huella, expiracion);
+        return tokenRepository.retirar(huella);
+    }
+
+    // Revoca los tokens persistidos de una familia de refresh, incluidos los ya retirados; devuelve las filas revocadas
+    @Transactional
+    public int revocarTokensDeFamilia(Long idFamilia) {
+        LocalDateTime ahora = LocalDateTime.now();
+        for (TokenRevocadoDTO token : tokenRepository.findTokensVigentesDeFamilia(idFamilia, ahora)) {
+            filtroRevocacion.revocar(token.getTokenHash(),
+                    token.getFechaExpiracion().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            revocacionFeedService.registrarToken(token.getTokenHash(), token.getFechaExpiracion());
+        }
+        return tokenRepository.revocarPorFamilia(idFamilia, ahora);
+    }
+
+    // Incrementa la época del usuario: invalida todos sus tokens con un UPDATE de una fila. Devuelve la nueva época
     @Transactional
-    public void revocarTodosLosTokensDelUsuario(Long idUsuario) {
-        tokenRepository.revocarTodosLosTokensDelUsuario(idUsuario, LocalDateTime.now());
-        log.info("Todos los tokens del usuario {} han sido revocados", idUsuario);
+    public long revocarTodosLosTokensDelUsuario(Long idUsuario) {
+        usuarioRepository.incrementarTokenEpoch(idUsuario);
+        long tokenEpoch = usuarioRepository.findTokenEpochByIdUsuario(idUsuario).orElse(0L);
+        usuarioRepository.findNombreUsuarioByIdUsuario(idUsuario).ifPresent(nombreUsuario -> {
+            usuarioCacheService.invalidarUsuario(nombreUsuario);
+            revocacionFeedService.registrarUsuario(idUsuario, nombreUsuario, tokenEpoch);
+        });
+        log.info("Todos los tokens del usuario {} han sido revocados (época {})", idUsuario, tokenEpoch);
+        return tokenEpoch;
     }
 
+    // Página de sesiones vigentes del usuario; desde = siguienteCursor de la página anterior (null para la primera)
     @Transactional(readOnly = true)
-    public List<Token> obtenerTokensActivosDelUsuario(Long idUsuario) {
-        return tokenRepository.findByUsuarioIdUsuario(idUsuario).stream()
-                .filter(Token::esValido)
-                .toList();
+    public SesionesResponse obtenerSesionesActivasDelUsuario(Long idUsuario, Long desde, Integer limite) {
+        int tamano = tamanoPagina(limite);
+        return pagina(tokenRepository.findSesionesActivasDelUsuario(
+                idUsuario, LocalDateTime.now(), cursor(desde), PageRequest.of(0, tamano)), tamano);
+    }
+
+    // Sesiones vigentes de todos los usuarios; se recorren página a página con el cursor, sin OFFSET
+    @Transactional(readOnly = true)
+    public SesionesResponse obtenerSesionesActivas(Long desde, Integer limite) {
+        int tamano = tamanoPagina(limite);
+        return pagina(tokenRepository.findSesionesActivas(
+                LocalDateTime.now(), cursor(desde), PageRequest.of(0, tamano)), tamano);
     }
 
     // Tarea programada para limpiar tokens expirados
+    // Sin @Transactional: la purga confirma cada lote por separado
     @Scheduled(cron = "${token.cleanup.cron}")
-    @Transactional
     public void limpiarTokensExpirados() {
-        LocalDateTime fechaLimite = LocalDateTime.now().minusDays(30); // Eliminar tokens con más de 30 días
-        int tokensEliminados = tokenRepository.findTokensExpirados(LocalDateTime.now()).size();
-        tokenRepository.eliminarTokensExpirados(fechaLimite);
+        LocalDateTime fechaLimite = LocalDateTime.now().minusDays(diasRetencion); // Conservar los expirados durante el periodo de retención
+        long tokensEliminados = purgaTokensService.purgar(fechaLimite);
         log.info("Limpieza de tokens completada. {} tokens eliminados", tokensEliminados);
     }
+
+    private int tamanoPagina(Integer limite) {
+        return limite == null || limite <= 0 ? paginaMaxima : Math.min(limite, paginaMaxima);
+    }
+
+    private Long cursor(Long desde) {
+        return desde != null ? desde : Long.MAX_VALUE;
+    }
+
+    private SesionesResponse pagina(List<SesionActivaDTO> sesiones, int tamano) {
+        Long siguiente = sesiones.size() == tamano ? sesiones.get(sesiones.size() - 1).getIdToken() : null;
+        return SesionesResponse.builder()
+                .sesiones(sesiones)
+                .siguienteCursor(siguiente)
+                .build();
+    }
 }
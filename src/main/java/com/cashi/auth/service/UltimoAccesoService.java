@@ -0,0 +1,130 @@
+package com.cashi.auth.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Buffer write-behind de marcas de último acceso (usuarios.ultimo_acceso y sesiones_usuario.fecha_ultimo_acceso).
+ * Cada acceso solo actualiza un mapa en memoria (se conserva el más reciente por id) y una tarea periódica
+ * vuelca lo pendiente en un único UPDATE por lotes JDBC. El retraso máximo en BD es auth.acceso.flush-ms;
+ * lo pendiente se vuelca también al apagar el servicio.
+ * Métricas: auth.acceso.pendientes (marcas sin volcar), auth.acceso.flush (duración de cada volcado).
+ */
+@Service
+@Slf4j
+public class UltimoAccesoService {
+
+    // La condición evita retroceder la marca si otro nodo ya escribió un acceso posterior
+    private static final String UPDATE_USUARIO =
+            "UPDATE usuarios SET ultimo_acceso = ? WHERE id_usuario = ? AND (ultimo_acceso IS NULL OR ultimo_acceso < ?)";
+    private static final String UPDATE_SESION =
+            "UPDATE sesiones_usuario SET fecha_ultimo_acceso = ? WHERE id_sesion = ? AND (fecha_ultimo_acceso IS NULL OR fecha_ultimo_acceso < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Long, LocalDateTime> usuariosPendientes = new ConcurrentHashMap<>();
+    private final Map<Long, LocalDateTime> sesionesPendientes = new ConcurrentHashMap<>();
+    private final Timer flushTimer;
+
+    public UltimoAccesoService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        Gauge.builder("auth.acceso.pendientes", this, s -> s.usuariosPendientes.size() + s.sesionesPendientes.size())
+                .description("Marcas de último acceso pendientes de volcar a BD")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("auth.acceso.flush")
+                .description("Duración del volcado por lotes de marcas de último acceso")
+                .register(meterRegistry);
+    }
+
+    public void registrarAccesoUsuario(Long idUsuario) {
+        registrar(usuariosPendientes, idUsuario);
+    }
+
+    public void registrarAccesoSesion(Long idSesion) {
+        registrar(sesionesPendientes, idSesion);
+    }
+
+    // Último acceso a mostrar: el pendiente en memoria si es más reciente que el persistido
+    public LocalDateTime ultimoAccesoUsuario(Long idUsuario, LocalDateTime persistido) {
+        LocalDateTime pendiente = idUsuario != null ? usuariosPendientes.get(idUsuario) : null;
+        if (pendiente == null || (persistido != null && persistido.isAfter(pendiente))) {
+            return persistido;
+        }
+        return pendiente;
+    }
+
+    @Scheduled(fixedDelayString = "${auth.acceso.flush-ms:5000}")
+    public void volcar() {
+        List<Object[]> usuarios = drenar(usuariosPendientes);
+        List<Object[]> sesiones = drenar(sesionesPendientes);
+        if (usuarios.isEmpty() && sesiones.isEmpty()) {
+            return;
+        }
+
+        flushTimer.record(() -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (!usuarios.isEmpty()) {
+                        jdbcTemplate.batchUpdate(UPDATE_USUARIO, usuarios);
+                    }
+                    if (!sesiones.isEmpty()) {
+                        jdbcTemplate.batchUpdate(UPDATE_SESION, sesiones);
+                    }
+                });
+                log.debug("Último acceso volcado: {} usuarios, {} sesiones", usuarios.size(), sesiones.size());
+            } catch (RuntimeException e) {
+                // Devolver las marcas al buffer para el siguiente intento sin pisar accesos más recientes
+                reencolar(usuariosPendientes, usuarios);
+                reencolar(sesionesPendientes, sesiones);
+                log.error("Error al volcar marcas de último acceso, se reintentará: {}", e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    void alApagar() {
+        volcar();
+    }
+
+    private void registrar(Map<Long, LocalDateTime> pendientes, Long id) {
+        if (id != null) {
+            pendientes.merge(id, LocalDateTime.now(), (anterior, nuevo) -> nuevo.isAfter(anterior) ? nuevo : anterior);
+        }
+    }
+
+    // Quitar cada entrada solo si no cambió mientras se copiaba; un acceso concurrente queda para el próximo volcado
+    private List<Object[]> drenar(Map<Long, LocalDateTime> pendientes) {
+        List<Object[]> filas = new ArrayList<>(pendientes.size());
+        for (Map.Entry<Long, LocalDateTime> entrada : pendientes.entrySet()) {
+            Long id = entrada.getKey();
+            LocalDateTime fecha = entrada.getValue();
+            if (pendientes.remove(id, fecha)) {
+                Timestamp marca = Timestamp.valueOf(fecha);
+                filas.add(new Object[]{marca, id, marca});
+            }
+        }
+        return filas;
+    }
+
+    private void reencolar(Map<Long, LocalDateTime> pendientes, List<Object[]> filas) {
+        for (Object[] fila : filas) {
+            LocalDateTime fecha = ((Timestamp) fila[0]).toLocalDateTime();
+            pendientes.merge((Long) fila[1], fecha, (actual, anterior) -> actual.isAfter(anterior) ? actual : anterior);
+        }
+    }
+}
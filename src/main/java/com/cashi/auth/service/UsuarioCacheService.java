@@ -0,0 +1,95 @@
+package com.cashi.auth.service;
+
+import com.cashi.auth.repository.UsuarioRepository;
+import com.cashi.auth.security.UsuarioSnapshot;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Caché acotada (tamaño + TTL) de snapshots de autorización por nombre de usuario.
+ * Las invalidaciones dentro de una transacción se aplican después del commit para que
+ * una carga concurrente no vuelva a cachear el estado anterior.
+ * Aciertos, fallos y tiempos de carga se publican como métricas "cache.*" con cache=usuarios.
+ */
+@Service
+@Slf4j
+public class UsuarioCacheService {
+
+    private final UsuarioRepository usuarioRepository;
+    private final PerfilRolService perfilRolService;
+    private final LoadingCache<String, UsuarioSnapshot> cache;
+
+    public UsuarioCacheService(
+            UsuarioRepository usuarioRepository,
+            PerfilRolService perfilRolService,
+            MeterRegistry meterRegistry,
+            @Value("${auth.cache.usuarios.max-size:10000}") long maxSize,
+            @Value("${auth.cache.usuarios.ttl-seconds:300}") long ttlSeconds
+    ) {
+        this.usuarioRepository = usuarioRepository;
+        this.perfilRolService = perfilRolService;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build(this::cargarSnapshot);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "usuarios");
+    }
+
+    public UsuarioSnapshot obtener(String nombreUsuario) {
+        return cache.get(nombreUsuario);
+    }
+
+    // Descartar y volver a cargar de inmediato (la entrada local quedó atrás de un cambio hecho en otro nodo)
+    public UsuarioSnapshot recargar(String nombreUsuario) {
+        cache.invalidate(nombreUsuario);
+        return cache.get(nombreUsuario);
+    }
+
+    public void invalidarUsuario(String nombreUsuario) {
+        if (nombreUsuario != null) {
+            despuesDelCommit(() -> cache.invalidate(nombreUsuario));
+        }
+    }
+
+    // Invalidar a todos los usuarios que tengan el rol (cambio de permisos o asignaciones del rol)
+    public void invalidarPorRol(Long idRol) {
+        despuesDelCommit(() -> cache.asMap().values().removeIf(snapshot -> snapshot.rolIds().contains(idRol)));
+    }
+
+    public void invalidarTodo() {
+        despuesDelCommit(cache::invalidateAll);
+    }
+
+    private UsuarioSnapshot cargarSnapshot(String nombreUsuario) {
+        log.debug("Cargando snapshot de usuario: {}", nombreUsuario);
+        return usuarioRepository.findCredencialesByNombreUsuario(nombreUsuario)
+                .map(credenciales -> UsuarioSnapshot.of(credenciales,
+                        perfilRolService.obtenerTodos(usuarioRepository.findRolIdsByIdUsuario(credenciales.getIdUsuario()))))
+                .orElseThrow(() -> new UsernameNotFoundException(
+                        "Usuario no encontrado: " + nombreUsuario));
+    }
+
+    private void despuesDelCommit(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
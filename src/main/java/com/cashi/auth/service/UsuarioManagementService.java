@@ -24,6 +24,9 @@ public class UsuarioManagementService {
     private final UsuarioRepository usuarioRepository;
     private final RolRepository rolRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UsuarioCacheService usuarioCacheService;
+    private final UltimoAccesoService ultimoAccesoService;
+    private final RevocacionFeedService revocacionFeedService;
 
     private static final String CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789!@#$%&*";
     private static final int PASSWORD_LENGTH = 12;
@@ -103,6 +106,7 @@ public class UsuarioManagementService {
     public UsuarioResponse actualizarUsuario(Long id, UsuarioRequest request) {
         Usuario usuario = usuarioRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
+        String nombreAnterior = usuario.getNombreUsuario();
 
         // Validar que el nombre de usuario no exista en otro usuario
         if (request.getNombreUsuario() != null && !request.getNombreUsuario().equals(usuario.getNombreUsuario())) {
@@ -151,6 +155,14 @@ public class UsuarioManagementService {
         }
 
         Usuario usuarioActualizado = usuarioRepository.save(usuario);
+        // Después del commit: invalidar antes dejaría que otra petición volviera a cachear la fila anterior.
+        // Los demás nodos descartan ambos nombres desde el registro de revocaciones
+        usuarioCacheService.invalidarUsuario(nombreAnterior);
+        revocacionFeedService.registrarCambioUsuario(id, nombreAnterior);
+        if (!nombreAnterior.equals(usuarioActualizado.getNombreUsuario())) {
+            usuarioCacheService.invalidarUsuario(usuarioActualizado.getNombreUsuario());
+            revocacionFeedService.registrarCambioUsuario(id, usuarioActualizado.getNombreUsuario());
+        }
         return convertirAResponse(usuarioActualizado);
     }
 
@@ -170,10 +182,11 @@ public class UsuarioManagementService {
 
     @Transactional
     public void eliminarUsuario(Long id) {
-        if (!usuarioRepository.existsById(id)) {
-            throw new RuntimeException("Usuario no encontrado con ID: " + id);
-        }
-        usuarioRepository.deleteById(id);
+        Usuario usuario = usuarioRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
+        usuarioRepository.delete(usuario);
+        usuarioCacheService.invalidarUsuario(usuario.getNombreUsuario());
+        revocacionFeedService.registrarCambioUsuario(id, usuario.getNombreUsuario());
     }
 
     private UsuarioResponse convertirAResponse(Usuario usuario) {
@@ -200,7 +213,7 @@ public class UsuarioManagementService {
                 .activo(usuario.getActivo())
                 .verificadoEmail(usuario.getVerificadoEmail())
                 .fechaCreacion(usuario.getFechaCreacion())
-                .ultimoAcceso(usuario.getUltimoAcceso())
+                .ultimoAcceso(ultimoAccesoService.ultimoAccesoUsuario(usuario.getIdUsuario(), usuario.getUltimoAcceso()))
                 .roleIds(roleIds)
                 .roleNombres(roleNombres)
                 .build();
@@ -19,6 +19,7 @@ CREATE TABLE IF NOT EXISTS usuarios (
     ultimo_acceso TIMESTAMP NULL,
     intentos_fallidos INT DEFAULT 0,
     bloqueado_hasta TIMESTAMP NULL,
+    token_epoch BIGINT NOT NULL DEFAULT 0,
     INDEX idx_nombre_usuario (nombre_usuario),
     INDEX idx_email (email),
     INDEX idx_activo (activo),
@@ -65,10 +66,10 @@ CREATE TABLE IF NOT EXISTS roles_permisos (
     FOREIGN KEY (id_permiso) REFERENCES permisos(id_permiso) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
--- Tabla: tokens (persistencia de JWT)
+-- Tabla: tokens (persistencia de JWT por su huella SHA-256; ver TokenHashMigracion para tablas existentes)
 CREATE TABLE IF NOT EXISTS tokens (
     id_token BIGINT AUTO_INCREMENT PRIMARY KEY,
-    token VARCHAR(500) NOT NULL UNIQUE,
+    token_hash BINARY(32),
     tipo_token VARCHAR(20) NOT NULL,
     activo BOOLEAN NOT NULL DEFAULT TRUE,
     revocado BOOLEAN DEFAULT FALSE,
@@ -78,11 +79,60 @@ CREATE TABLE IF NOT EXISTS tokens (
     user_agent VARCHAR(255),
     dispositivo VARCHAR(100),
     fecha_revocacion TIMESTAMP NULL,
+    token_epoch BIGINT,
+    id_familia BIGINT,
     id_usuario BIGINT NOT NULL,
     FOREIGN KEY (id_usuario) REFERENCES usuarios(id_usuario) ON DELETE CASCADE,
-    INDEX idx_token (token),
+    UNIQUE INDEX idx_token_hash (token_hash),
     INDEX idx_usuario_activo (id_usuario, activo),
-    INDEX idx_fecha_expiracion (fecha_expiracion)
+    INDEX idx_fecha_expiracion (fecha_expiracion),
+    INDEX idx_token_familia (id_familia)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Tabla: familias_refresh (rotación de refresh tokens; solo la generación actual de cada familia es válida)
+CREATE TABLE IF NOT EXISTS familias_refresh (
+    id_familia BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id_usuario BIGINT NOT NULL,
+    generacion BIGINT NOT NULL DEFAULT 0,
+    revocada BOOLEAN NOT NULL DEFAULT FALSE,
+    fecha_creacion TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    fecha_rotacion TIMESTAMP NULL,
+    fecha_expiracion TIMESTAMP NOT NULL,
+    INDEX idx_familia_usuario (id_usuario),
+    INDEX idx_familia_fecha_expiracion (fecha_expiracion)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Tabla: llaves_jwt (llaves agregadas o retiradas en tiempo de ejecución; la leen todos los nodos)
+CREATE TABLE IF NOT EXISTS llaves_jwt (
+    kid VARCHAR(50) PRIMARY KEY,
+    algoritmo VARCHAR(10) NOT NULL,
+    -- Material privado cifrado con AES-256-GCM (jwt.keys.encryption-key, fuera de la BD)
+    secreto_cifrado VARCHAR(1024),
+    llave_privada_cifrada VARCHAR(1024),
+    llave_publica VARCHAR(1024),
+    activa BOOLEAN NOT NULL DEFAULT FALSE,
+    retirada BOOLEAN NOT NULL DEFAULT FALSE,
+    fecha_creacion TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Tabla: revocaciones_token (registro append-only que cada nodo lee desde su marca de agua)
+CREATE TABLE IF NOT EXISTS revocaciones_token (
+    id_revocacion BIGINT AUTO_INCREMENT PRIMARY KEY,
+    tipo VARCHAR(20) NOT NULL,
+    token_hash BINARY(32),
+    fecha_expiracion TIMESTAMP NULL,
+    id_usuario BIGINT,
+    nombre_usuario VARCHAR(50),
+    token_epoch BIGINT,
+    id_rol BIGINT,
+    fecha_registro TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_revocacion_fecha_registro (fecha_registro)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Tabla: migraciones (migraciones de datos ya aplicadas; TokenHashMigracion la crea si no existe)
+CREATE TABLE IF NOT EXISTS migraciones (
+    nombre VARCHAR(100) PRIMARY KEY,
+    fecha_aplicacion TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- Tabla: sesiones_usuario (tracking de sesiones)
@@ -0,0 +1,147 @@
+package com.cashi.auth.benchmark;
+
+import com.cashi.auth.CashiAuthApplication;
+import com.cashi.auth.entity.Permiso;
+import com.cashi.auth.entity.Rol;
+import com.cashi.auth.entity.RolAsignacion;
+import com.cashi.auth.entity.Usuario;
+import com.cashi.auth.repository.PermisoRepository;
+import com.cashi.auth.repository.RolRepository;
+import com.cashi.auth.repository.UsuarioRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carga de un usuario con 3 roles al crecer el catálogo de permisos y las asignaciones por rol.
+ * porNiveles es el plan actual (usuario + roles y luego permisos y asignaciones por lotes): lee R + R·P + R·A filas.
+ * cartesiano es el EntityGraph anterior sobre roles, roles.permisos y roles.asignaciones en una sola consulta:
+ * lee R·P·A filas. Cada combinación levanta la aplicación con el perfil test sobre su propia base H2 en memoria.
+ * Ejecutar: mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *           java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main CargaUsuarioBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CargaUsuarioBenchmark {
+
+    private static final String USUARIO = "agente.benchmark";
+    private static final int ROLES = 3;
+
+    private static final String CARTESIANO =
+            "SELECT DISTINCT u FROM Usuario u LEFT JOIN FETCH u.roles r " +
+            "LEFT JOIN FETCH r.permisos LEFT JOIN FETCH r.asignaciones WHERE u.nombreUsuario = :nombreUsuario";
+
+    @Param({"25", "100", "400"})
+    private int permisos;
+
+    @Param({"1", "10", "40"})
+    private int asignaciones;
+
+    private ConfigurableApplicationContext contexto;
+    private UsuarioRepository usuarioRepository;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager entityManager;
+
+    @Setup
+    public void preparar() {
+        contexto = new SpringApplicationBuilder(CashiAuthApplication.class)
+                .profiles("test")
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:carga_" + permisos + "_" + asignaciones
+                                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.properties.hibernate.generate_statistics=false",
+                        "server.port=0",
+                        "logging.level.root=WARN",
+                        "logging.level.com.cashi.auth=WARN",
+                        "logging.level.org.springframework.security=WARN")
+                .run();
+        usuarioRepository = contexto.getBean(UsuarioRepository.class);
+        transactionTemplate = contexto.getBean(TransactionTemplate.class);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(contexto.getBean(EntityManagerFactory.class));
+        poblar(contexto.getBean(PermisoRepository.class), contexto.getBean(RolRepository.class));
+    }
+
+    @TearDown
+    public void cerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public int porNiveles() {
+        return transactionTemplate.execute(status -> contar(usuarioRepository.findByNombreUsuarioWithRoles(USUARIO).orElseThrow()));
+    }
+
+    @Benchmark
+    public int cartesiano() {
+        return transactionTemplate.execute(status -> contar(entityManager.createQuery(CARTESIANO, Usuario.class)
+                .setParameter("nombreUsuario", USUARIO)
+                .getSingleResult()));
+    }
+
+    // Recorre lo que usa el login al generar el token: permisos y asignaciones de cada rol
+    private int contar(Usuario usuario) {
+        int total = 0;
+        for (Rol rol : usuario.getRoles()) {
+            total += rol.getPermisos().size() + rol.getAsignaciones().size();
+        }
+        return total;
+    }
+
+    private void poblar(PermisoRepository permisoRepository, RolRepository rolRepository) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Permiso> catalogo = new ArrayList<>();
+            for (int i = 0; i < permisos; i++) {
+                catalogo.add(permisoRepository.save(new Permiso("BENCH_" + i, "Permiso " + i, null, "BENCH", i)));
+            }
+
+            Set<Rol> roles = new HashSet<>();
+            for (int r = 0; r < ROLES; r++) {
+                Rol rol = Rol.builder()
+                        .nombreRol("BENCH_" + r)
+                        .permisos(new HashSet<>(catalogo))
+                        .build();
+                for (int a = 0; a < asignaciones; a++) {
+                    rol.getAsignaciones().add(RolAsignacion.builder()
+                            .rol(rol)
+                            .tipoAsignacion(RolAsignacion.TipoAsignacion.CARTERA)
+                            .tenantId(1L)
+                            .portfolioId((long) a + 1)
+                            .build());
+                }
+                roles.add(rolRepository.save(rol));
+            }
+
+            usuarioRepository.save(Usuario.builder()
+                    .nombreUsuario(USUARIO)
+                    .email(USUARIO + "@cashi.test")
+                    .contrasena("{noop}benchmark")
+                    .roles(roles)
+                    .build());
+        });
+    }
+}
@@ -0,0 +1,98 @@
+package com.cashi.auth.benchmark;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPair;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de firmar y verificar un access token por algoritmo (HS512, ES256, EdDSA), con los mismos
+ * claims y el mismo armado que JwtUtil.createToken; el parser se construye una sola vez como en JwtUtil.
+ * Ejecutar: mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *           java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main JwtFirmaBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtFirmaBenchmark {
+
+    private static final String SECRETO = "miClaveSecretaSuperSeguraParaJWTEnCashiQueDebeSerMuyLargaParaHS512AlMenos512Bits";
+
+    @Param({"HS512", "ES256", "EdDSA"})
+    private String algoritmo;
+
+    private Key llaveFirma;
+    private JwtParser parser;
+    private Map<String, Object> claims;
+    private String token;
+
+    @Setup
+    public void preparar() {
+        Key llaveVerificacion;
+        switch (algoritmo) {
+            case "ES256" -> {
+                KeyPair par = Jwts.SIG.ES256.keyPair().build();
+                llaveFirma = par.getPrivate();
+                llaveVerificacion = par.getPublic();
+            }
+            case "EdDSA" -> {
+                KeyPair par = Jwks.CRV.Ed25519.keyPair().build();
+                llaveFirma = par.getPrivate();
+                llaveVerificacion = par.getPublic();
+            }
+            default -> {
+                llaveFirma = Keys.hmacShaKeyFor(SECRETO.getBytes(StandardCharsets.UTF_8));
+                llaveVerificacion = llaveFirma;
+            }
+        }
+        Key verificacion = llaveVerificacion;
+        parser = Jwts.parser().keyLocator(header -> verificacion).build();
+        claims = Map.of(
+                "ep", 0L,
+                "uid", 42L,
+                "roles", List.of("AGENTE"),
+                "pbits", "AAAAAAAAAP8",
+                "pv", 1L);
+        token = firmar();
+    }
+
+    @Benchmark
+    public String firmar() {
+        long ahora = System.currentTimeMillis();
+        return Jwts.builder()
+                .header().keyId("k1").and()
+                .claims(claims)
+                .subject("agente01")
+                .issuedAt(new Date(ahora))
+                .expiration(new Date(ahora + 86_400_000L))
+                .signWith(llaveFirma)
+                .compact();
+    }
+
+    @Benchmark
+    public Object verificar() {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+}
@@ -0,0 +1,130 @@
+package com.cashi.auth.benchmark;
+
+import com.cashi.auth.repository.ConfiguracionSesionRepository;
+import com.cashi.auth.repository.LlaveJwtRepository;
+import com.cashi.auth.repository.PermisoRepository;
+import com.cashi.auth.security.CifradorLlaves;
+import com.cashi.auth.security.JwtKeyRing;
+import com.cashi.auth.security.JwtUtil;
+import com.cashi.auth.service.ConfiguracionSesionService;
+import com.cashi.auth.service.DiccionarioPermisosService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtUtil actual (llave del anillo y parser construidos una vez, llave resuelta por el header "kid", claims
+ * extraídos en una sola pasada de verifyToken) frente a derivar la llave del secreto y construir el parser en
+ * cada llamada, como hacía JwtUtil antes (getSigningKey() + Jwts.parser().verifyWith(...).build()).
+ * JwtUtil se arma con un JwtKeyRing fijo (HS512, sin llaves en tiempo de ejecución) y la configuración por defecto.
+ * Ejecutar: mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *           java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main JwtParserBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtParserBenchmark {
+
+    private static final String SECRETO = "miClaveSecretaSuperSeguraParaJWTEnCashiQueDebeSerMuyLargaParaHS512AlMenos512Bits";
+
+    private JwtUtil jwtUtil;
+    private UserDetails usuario;
+    private Map<String, Object> claims;
+    private String token;
+
+    @Setup
+    public void preparar() {
+        JwtKeyRing keyRing = new JwtKeyRing(new StandardEnvironment(), repositorio(LlaveJwtRepository.class),
+                new CifradorLlaves(""));
+        ReflectionTestUtils.setField(keyRing, "secret", SECRETO);
+        ReflectionTestUtils.setField(keyRing, "keyId", "k1");
+        ReflectionTestUtils.setField(keyRing, "previousKeys", "");
+        ReflectionTestUtils.setField(keyRing, "algorithm", JwtKeyRing.HS512);
+        ReflectionTestUtils.invokeMethod(keyRing, "init");
+
+        jwtUtil = new JwtUtil(
+                new ConfiguracionSesionService(repositorio(ConfiguracionSesionRepository.class)),
+                keyRing,
+                new DiccionarioPermisosService(repositorio(PermisoRepository.class)));
+        ReflectionTestUtils.setField(jwtUtil, "defaultExpiration", 86_400_000L);
+        ReflectionTestUtils.setField(jwtUtil, "defaultRefreshExpiration", 604_800_000L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "initParser");
+
+        usuario = User.withUsername("agente01")
+                .password("{noop}benchmark")
+                .authorities("ROLE_AGENTE", "CLIENTES_VER_ASIGNADOS", "GESTIONES_REGISTRAR", "PAGOS_VER")
+                .build();
+        claims = Map.of(
+                "ep", 0L,
+                "roles", List.of("AGENTE"),
+                "permisos", List.of("CLIENTES_VER_ASIGNADOS", "GESTIONES_REGISTRAR", "PAGOS_VER"));
+        token = jwtUtil.generateAccessToken(usuario);
+    }
+
+    @Benchmark
+    public String firmarConJwtUtil() {
+        return jwtUtil.generateAccessToken(usuario);
+    }
+
+    @Benchmark
+    public String firmarDerivandoLlave() {
+        long ahora = System.currentTimeMillis();
+        return Jwts.builder()
+                .claims(claims)
+                .subject("agente01")
+                .issuedAt(new Date(ahora))
+                .expiration(new Date(ahora + 86_400_000L))
+                .signWith(Keys.hmacShaKeyFor(SECRETO.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+    }
+
+    @Benchmark
+    public Object verificarConJwtUtil() {
+        return jwtUtil.verifyToken(token).orElseThrow();
+    }
+
+    @Benchmark
+    public Object verificarConstruyendoParser() {
+        SecretKey llavePorLlamada = Keys.hmacShaKeyFor(SECRETO.getBytes(StandardCharsets.UTF_8));
+        return Jwts.parser().verifyWith(llavePorLlamada).build().parseSignedClaims(token).getPayload();
+    }
+
+    // Repositorio vacío: sin llaves en llaves_jwt, sin configuración guardada (valores por defecto) ni permisos
+    @SuppressWarnings("unchecked")
+    private static <T> T repositorio(Class<T> tipo) {
+        return (T) Proxy.newProxyInstance(
+                tipo.getClassLoader(),
+                new Class<?>[]{tipo},
+                (proxy, metodo, args) -> switch (metodo.getName()) {
+                    case "findAll", "findByActivoTrue", "findByActivoTrueOrderByOrdenVisualizacion" -> List.of();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> tipo.getSimpleName() + " vacío";
+                    default -> throw new UnsupportedOperationException(metodo.getName());
+                });
+    }
+}
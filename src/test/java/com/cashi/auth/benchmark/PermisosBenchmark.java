@@ -0,0 +1,117 @@
+package com.cashi.auth.benchmark;
+
+import com.cashi.auth.config.PermisoSeeder;
+import com.cashi.auth.entity.Permiso;
+import com.cashi.auth.repository.PermisoRepository;
+import com.cashi.auth.security.BitsetPermissionEvaluator;
+import com.cashi.auth.security.DiccionarioPermisos;
+import com.cashi.auth.security.PermisosAuthenticationToken;
+import com.cashi.auth.security.PermisosCompilados;
+import com.cashi.auth.service.DiccionarioPermisosService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verificación de un permiso con el catálogo real de PermisoSeeder: prueba de bit de BitsetPermissionEvaluator
+ * frente a las dos formas basadas en cadenas (el recorrido de authorities y el Set que arma hasAuthority en
+ * cada evaluación). El agente tiene la mitad del catálogo; COMUNICACIONES_MODO_SUSURRO es de los últimos
+ * que tiene y COMUNICACIONES_CAMPANAS_GESTIONAR no lo tiene (recorrido completo).
+ * Ejecutar: mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *           java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main PermisosBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermisosBenchmark {
+
+    @Param({"COMUNICACIONES_MODO_SUSURRO", "COMUNICACIONES_CAMPANAS_GESTIONAR"})
+    private String codigo;
+
+    private BitsetPermissionEvaluator evaluator;
+    private Authentication autenticacionCadenas;
+    private Authentication autenticacionBits;
+
+    @Setup
+    public void preparar() {
+        List<Permiso> catalogo = new ArrayList<>();
+        PermisoRepository repositorio = catalogoEnMemoria(catalogo);
+        DiccionarioPermisosService diccionarioService = new DiccionarioPermisosService(repositorio);
+        new PermisoSeeder(repositorio, diccionarioService).run();
+        DiccionarioPermisos diccionario = diccionarioService.obtenerDiccionario();
+
+        List<String> concedidos = new ArrayList<>();
+        for (int i = 0; i < catalogo.size(); i += 2) {
+            concedidos.add(catalogo.get(i).getCodigoPermiso());
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        authorities.add(new SimpleGrantedAuthority("ROLE_AGENTE"));
+        concedidos.forEach(permiso -> authorities.add(new SimpleGrantedAuthority(permiso)));
+
+        evaluator = new BitsetPermissionEvaluator(diccionarioService);
+        autenticacionCadenas = new UsernamePasswordAuthenticationToken("agente01", null, authorities);
+        autenticacionBits = new PermisosAuthenticationToken("agente01", authorities,
+                PermisosCompilados.of(diccionario.toBitSet(concedidos)));
+    }
+
+    @Benchmark
+    public boolean bitset() {
+        return evaluator.hasPermission(autenticacionBits, null, codigo);
+    }
+
+    @Benchmark
+    public boolean recorridoAuthorities() {
+        return autenticacionCadenas.getAuthorities().stream()
+                .anyMatch(auth -> codigo.equals(auth.getAuthority()));
+    }
+
+    // Lo que hace hasAuthority: SecurityExpressionRoot se crea por invocación y arma el Set de authorities
+    @Benchmark
+    public boolean conjuntoHasAuthority() {
+        return AuthorityUtils.authorityListToSet(autenticacionCadenas.getAuthorities()).contains(codigo);
+    }
+
+    // PermisoRepository mínimo para correr PermisoSeeder sin BD: guarda en la lista y asigna ids secuenciales
+    private static PermisoRepository catalogoEnMemoria(List<Permiso> catalogo) {
+        return (PermisoRepository) Proxy.newProxyInstance(
+                PermisoRepository.class.getClassLoader(),
+                new Class<?>[]{PermisoRepository.class},
+                (proxy, metodo, args) -> switch (metodo.getName()) {
+                    case "existsByCodigoPermiso" -> catalogo.stream()
+                            .anyMatch(permiso -> permiso.getCodigoPermiso().equals(args[0]));
+                    case "save" -> {
+                        Permiso permiso = (Permiso) args[0];
+                        permiso.setIdPermiso((long) catalogo.size() + 1);
+                        catalogo.add(permiso);
+                        yield permiso;
+                    }
+                    case "findAll" -> List.copyOf(catalogo);
+                    case "count" -> (long) catalogo.size();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "PermisoRepository en memoria";
+                    default -> throw new UnsupportedOperationException(metodo.getName());
+                });
+    }
+}
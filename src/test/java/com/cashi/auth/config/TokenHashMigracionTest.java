@@ -0,0 +1,175 @@
+package com.cashi.auth.config;
+
+import com.cashi.auth.security.TokenDigest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Migración a token_hash sobre una tabla tokens con la columna antigua, en H2 modo MySQL.
+ * H2 no tiene GET_LOCK, RELEASE_LOCK, SHA2 ni UNHEX: se registran como alias de {@link FuncionesMySql},
+ * que además cuenta los bloqueos. El esquema lleva el nombre de la base para que DATABASE() lo encuentre
+ * en information_schema como en MySQL.
+ */
+class TokenHashMigracionTest {
+
+    private static final int FILAS = 12;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private TokenHashMigracion migracion;
+
+    @BeforeEach
+    void crearTablaAntigua() {
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:migracion;MODE=MySQL;DATABASE_TO_LOWER=TRUE;" +
+                "INIT=CREATE SCHEMA IF NOT EXISTS migracion\\;SET SCHEMA migracion", true);
+        jdbc = new JdbcTemplate(dataSource);
+        FuncionesMySql.registrar(jdbc);
+
+        jdbc.execute("CREATE TABLE tokens (id_token BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "token VARCHAR(500) NOT NULL, token_hash BINARY(32), tipo_token VARCHAR(20))");
+        for (int i = 1; i <= FILAS; i++) {
+            insertarComoVersionAnterior("jwt." + i);
+        }
+
+        migracion = new TokenHashMigracion(jdbc);
+        ReflectionTestUtils.setField(migracion, "lote", 5);
+        ReflectionTestUtils.setField(migracion, "esperaLockSegundos", 1);
+        ReflectionTestUtils.setField(migracion, "escribirToken", true);
+    }
+
+    @AfterEach
+    void cerrar() {
+        jdbc.execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+    }
+
+    @Test
+    void rellenaPorRangosBajoElLockYRegistraLaMigracion() {
+        migracion.migrar();
+
+        assertThat(FuncionesMySql.bloqueos.get()).isEqualTo(1);
+        assertThat(FuncionesMySql.liberaciones.get()).isEqualTo(1);
+        assertThat(sinHuella()).isZero();
+        assertThat(huellaDe("jwt.7")).isEqualTo(TokenDigest.of("jwt.7"));
+        assertThat(jdbc.queryForObject("SELECT is_nullable FROM information_schema.columns " +
+                "WHERE table_name = 'tokens' AND column_name = 'token'", String.class)).isEqualTo("YES");
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM migraciones", Integer.class)).isEqualTo(1);
+
+        // Reinicio: ya registrada, no vuelve a tomar el lock
+        migracion.migrar();
+        assertThat(FuncionesMySql.bloqueos.get()).isEqualTo(1);
+    }
+
+    @Test
+    void mantieneCompatibilidadConNodosDeLaVersionAnterior() {
+        migracion.migrar();
+
+        // Un nodo anterior inserta sin huella; el relleno periódico la calcula
+        insertarComoVersionAnterior("jwt.anterior");
+        assertThat(sinHuella()).isEqualTo(1);
+        migracion.rellenarPendientes();
+        assertThat(huellaDe("jwt.anterior")).isEqualTo(TokenDigest.of("jwt.anterior"));
+
+        // Un nodo nuevo inserta solo la huella y escribe también el token para los nodos anteriores
+        jdbc.update("INSERT INTO tokens (token_hash, tipo_token) VALUES (?, 'ACCESS')", (Object) TokenDigest.of("jwt.nuevo"));
+        Long idNuevo = jdbc.queryForObject("SELECT MAX(id_token) FROM tokens", Long.class);
+        migracion.escribirTokenLegado(idNuevo, "jwt.nuevo");
+        assertThat(jdbc.queryForObject("SELECT token FROM tokens WHERE id_token = ?", String.class, idNuevo))
+                .isEqualTo("jwt.nuevo");
+    }
+
+    @Test
+    void rellenaLasFilasPendientesAntesDeEliminarLaColumna() {
+        migracion.migrar();
+        insertarComoVersionAnterior("jwt.tardio");
+
+        ReflectionTestUtils.setField(migracion, "eliminarColumna", true);
+        migracion.migrar();
+
+        assertThat(FuncionesMySql.bloqueos.get()).isEqualTo(2);
+        assertThat(FuncionesMySql.liberaciones.get()).isEqualTo(2);
+        assertThat(sinHuella()).isZero();
+        assertThat(jdbc.queryForList("SELECT column_name FROM information_schema.columns " +
+                "WHERE table_name = 'tokens' AND column_name = 'token'", String.class)).isEmpty();
+
+        // Sin la columna antigua no se escribe ni se rellena nada
+        migracion.escribirTokenLegado(1L, "jwt.1");
+        migracion.rellenarPendientes();
+    }
+
+    @Test
+    void fallaSiNoObtieneElLock() {
+        FuncionesMySql.lockDisponible = false;
+
+        assertThatThrownBy(() -> migracion.migrar())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("lock");
+        assertThat(sinHuella()).isEqualTo(FILAS);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM migraciones", Integer.class)).isZero();
+    }
+
+    private void insertarComoVersionAnterior(String token) {
+        jdbc.update("INSERT INTO tokens (token, tipo_token) VALUES (?, 'ACCESS')", token);
+    }
+
+    private int sinHuella() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM tokens WHERE token_hash IS NULL", Integer.class);
+    }
+
+    private byte[] huellaDe(String token) {
+        List<byte[]> huellas = jdbc.queryForList("SELECT token_hash FROM tokens WHERE token = ?", byte[].class, token);
+        return huellas.get(0);
+    }
+
+    // Funciones de MySQL que usa la migración, como alias de H2
+    public static class FuncionesMySql {
+
+        static final AtomicInteger bloqueos = new AtomicInteger();
+        static final AtomicInteger liberaciones = new AtomicInteger();
+        static volatile boolean lockDisponible = true;
+
+        static void registrar(JdbcTemplate jdbc) {
+            bloqueos.set(0);
+            liberaciones.set(0);
+            lockDisponible = true;
+            String clase = FuncionesMySql.class.getName();
+            jdbc.execute("CREATE ALIAS GET_LOCK FOR '" + clase + ".getLock'");
+            jdbc.execute("CREATE ALIAS RELEASE_LOCK FOR '" + clase + ".releaseLock'");
+            jdbc.execute("CREATE ALIAS SHA2 FOR '" + clase + ".sha2'");
+            jdbc.execute("CREATE ALIAS UNHEX FOR '" + clase + ".unhex'");
+        }
+
+        public static Integer getLock(String nombre, int esperaSegundos) {
+            if (!lockDisponible) {
+                return 0;
+            }
+            bloqueos.incrementAndGet();
+            return 1;
+        }
+
+        public static Integer releaseLock(String nombre) {
+            liberaciones.incrementAndGet();
+            return 1;
+        }
+
+        public static String sha2(String valor, int bits) {
+            return valor == null ? null : HexFormat.of().formatHex(TokenDigest.of(valor));
+        }
+
+        public static byte[] unhex(String hex) {
+            return hex == null ? null : HexFormat.of().parseHex(hex);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.cashi.auth.service;
+
+import com.cashi.auth.dto.request.LoginRequest;
+import com.cashi.auth.dto.response.AuthResponse;
+import com.cashi.auth.entity.Permiso;
+import com.cashi.auth.entity.Rol;
+import com.cashi.auth.entity.RolAsignacion;
+import com.cashi.auth.entity.Usuario;
+import com.cashi.auth.repository.PermisoRepository;
+import com.cashi.auth.repository.RolRepository;
+import com.cashi.auth.repository.UsuarioRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Presupuesto de sentencias SQL del login, medido con las estadísticas de Hibernate.
+ * Si un cambio agrega consultas (una recarga, un N+1 en roles o permisos, un flush extra) la prueba falla:
+ * el login en frío al inicio de turno es el peor evento de latencia del servicio.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class LoginPresupuestoSentenciasTest {
+
+    private static final String USUARIO = "agente.presupuesto";
+    private static final String CONTRASENA = "Clave#Presupuesto1";
+    private static final int ROLES = 3;
+
+    // Credenciales e ids de rol del snapshot (el login anterior lo invalidó al subir la época), usuario + roles,
+    // época (UPDATE + SELECT + nombre), registro de revocación, familia, permisos y asignaciones por lotes
+    // y los dos tokens
+    private static final long PRESUPUESTO_LOGIN = 12;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private RevocacionFeedService revocacionFeedService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private RolRepository rolRepository;
+
+    @Autowired
+    private PermisoRepository permisoRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeAll
+    void crearUsuario() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Permiso> catalogo = permisoRepository.findByActivoTrueOrderByOrdenVisualizacion();
+            Set<Rol> roles = new HashSet<>();
+            for (int i = 0; i < ROLES; i++) {
+                Rol rol = Rol.builder()
+                        .nombreRol("PRESUPUESTO_" + i)
+                        .descripcion("Rol de la prueba de presupuesto")
+                        .permisos(new HashSet<>(catalogo.subList(i * 5, i * 5 + 10)))
+                        .build();
+                rol.getAsignaciones().add(RolAsignacion.builder()
+                        .rol(rol)
+                        .tipoAsignacion(RolAsignacion.TipoAsignacion.CARTERA)
+                        .tenantId(1L)
+                        .portfolioId((long) i + 1)
+                        .build());
+                roles.add(rolRepository.save(rol));
+            }
+
+            usuarioRepository.save(Usuario.builder()
+                    .nombreUsuario(USUARIO)
+                    .email(USUARIO + "@cashi.test")
+                    .contrasena(passwordEncoder.encode(CONTRASENA))
+                    .nombreCompleto("Agente Presupuesto")
+                    .roles(roles)
+                    .build());
+        });
+
+        // Primer login: compila los perfiles de rol y deja la aplicación en su estado habitual
+        login();
+    }
+
+    @BeforeEach
+    void limpiarEstadisticas() {
+        // sondear() es synchronized: espera un sondeo programado en curso antes de empezar a medir
+        revocacionFeedService.sondear();
+        statistics.clear();
+    }
+
+    @Test
+    void loginRespetaElPresupuestoDeSentencias() {
+        AuthResponse response = login();
+
+        assertThat(response.getAccessToken()).isNotBlank();
+        assertThat(statistics.getPrepareStatementCount())
+                .as("sentencias del login con %d roles", ROLES)
+                .isLessThanOrEqualTo(PRESUPUESTO_LOGIN);
+    }
+
+    @Test
+    void getAuthoritiesCargaLosPermisosDeTodosLosRolesEnUnaConsulta() {
+        int autoridades = transactionTemplate.execute(status -> {
+            Usuario usuario = usuarioRepository.findByNombreUsuarioWithRoles(USUARIO).orElseThrow();
+            statistics.clear();
+            return usuario.getAuthorities().size();
+        });
+
+        assertThat(autoridades).isGreaterThan(ROLES);
+        assertThat(statistics.getPrepareStatementCount())
+                .as("sentencias de getAuthorities con %d roles", ROLES)
+                .isEqualTo(1);
+    }
+
+    private AuthResponse login() {
+        return authService.login(LoginRequest.builder()
+                .nombreUsuario(USUARIO)
+                .contrasena(CONTRASENA)
+                .ipCliente("10.0.0.1")
+                .userAgent("JUnit")
+                .dispositivo("prueba")
+                .build());
+    }
+}